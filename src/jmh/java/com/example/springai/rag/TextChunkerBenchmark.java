@@ -0,0 +1,76 @@
+package com.example.springai.rag;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmark of the chunker, built and run with the {@code jmh} profile:
+ * {@code mvn -P jmh test-compile exec:exec}. Arguments for JMH go in
+ * {@code -Djmh.args}, e.g. {@code -Djmh.args="-prof gc"}. Chunks the same
+ * generated 8 MB of mixed Latin and CJK paragraphs as
+ * TextChunkerBenchmarkTest, handed over a page at a time as extraction
+ * does, and reports the time per pass for each strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class TextChunkerBenchmark {
+
+    private static final int TEXT_CHARS = 8 * 1024 * 1024;
+    private static final int PIECE_CHARS = 4096;
+
+    @Param({"PARAGRAPH", "FIXED"})
+    private DocumentCollection.ChunkingStrategy strategy;
+
+    private String text;
+    private ChunkingOptions options;
+
+    @Setup
+    public void setUp() {
+        text = generateText(new Random(42));
+        options = new ChunkingOptions(strategy, 1000, 100, 256);
+    }
+
+    @Benchmark
+    public void chunk(Blackhole blackhole) {
+        TextChunker chunker = new TextChunker(blackhole::consume, options);
+        for (int from = 0; from < text.length(); from += PIECE_CHARS) {
+            chunker.append(text.subSequence(from, Math.min(from + PIECE_CHARS, text.length())));
+        }
+        chunker.finish();
+    }
+
+    private static String generateText(Random random) {
+        StringBuilder text = new StringBuilder(TEXT_CHARS);
+        while (text.length() < TEXT_CHARS) {
+            int words = 20 + random.nextInt(200);
+            boolean cjk = random.nextInt(5) == 0;
+            for (int w = 0; w < words; w++) {
+                int length = 1 + random.nextInt(cjk ? 4 : 12);
+                for (int c = 0; c < length; c++) {
+                    text.append(cjk ? (char) ('一' + random.nextInt(2000)) : (char) ('a' + random.nextInt(26)));
+                }
+                text.append(random.nextInt(12) == 0 ? ". " : " ");
+            }
+            text.append("\n\n");
+        }
+        text.setLength(TEXT_CHARS);
+        return text.toString();
+    }
+}
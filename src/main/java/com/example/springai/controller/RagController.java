@@ -1,15 +1,19 @@
 package com.example.springai.controller;
 
+import com.example.springai.exception.RagException;
 import com.example.springai.rag.*;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -21,7 +25,18 @@ public class RagController {
     private final BatchProcessingService batchProcessingService;
     private final DocumentCollectionRepository collectionRepository;
     private final DocumentVersionRepository versionRepository;
-    private final DocumentMetadataRepository documentMetadataRepository;
+    private final SemanticAnswerCache answerCache;
+    private final CacheService cacheService;
+    private final CacheWarmer cacheWarmer;
+    private final IngestionPipeline ingestionPipeline;
+    private final IngestionExecutor ingestionExecutor;
+    private final IngestionFairScheduler fairScheduler;
+    private final DocumentPurger documentPurger;
+    private final ChunkIndexMaintenance chunkIndexMaintenance;
+    private final IngestionJobTracker jobTracker;
+    private final IngestionJobRepository jobRepository;
+    private final UploadSessionService uploadSessionService;
+    private final ArchiveIngestionService archiveIngestionService;
 
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadDocument(
@@ -31,26 +46,17 @@ public class RagController {
             @RequestParam(required = false, defaultValue = "false") boolean batch,
             @RequestHeader("X-User-Id") String userId) {
         try {
-            String documentId;
             if (batch) {
-                CompletableFuture<String> future = batchProcessingService.processBatchDocument(file, userId);
-                documentId = future.get(); // Wait for completion
-            } else {
-                documentId = ragService.processAndStoreDocument(file);
+                // Spool and queue, any ingestion worker in the cluster picks it up
+                DocumentVersion job = batchProcessingService.acceptBatchDocument(file, userId, collectionId, tags);
+                return ResponseEntity.accepted().body(acceptedJob(job));
             }
 
+            String documentId = ragService.processAndStoreDocument(file, collectionId, userId);
+
             // Update collection if specified
             if (collectionId != null) {
-                DocumentCollection collection = collectionRepository.findById(collectionId)
-                        .orElseThrow(() -> new RuntimeException("Collection not found"));
-                DocumentMetadata metadata = documentMetadataRepository.findById(documentId).get();
-                metadata.setCollectionId(collectionId);
-                metadata.setTags(tags != null ? tags : new HashSet<>());
-                documentMetadataRepository.save(metadata);
-
-                // Update collection stats
-                collection.setDocumentCount(collection.getDocumentCount() + 1);
-                collectionRepository.save(collection);
+                ragService.addToCollection(documentId, collectionId, tags);
             }
 
             Map<String, Object> response = new HashMap<>();
@@ -66,6 +72,223 @@ public class RagController {
         }
     }
 
+    /**
+     * Ingests every document in a zip or tar stream sent as the request
+     * body, and reports the outcome of each entry.
+     */
+    @PostMapping(value = "/archives", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> uploadArchive(
+            @RequestParam String format,
+            @RequestParam(required = false) String collectionId,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestHeader("X-User-Id") String userId,
+            HttpServletRequest request) {
+        try {
+            List<Map<String, Object>> entries = archiveIngestionService.ingest(
+                    request.getInputStream(), format, userId, collectionId, tags);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("entries", entries);
+            response.put("ingested", entries.stream().filter(entry -> "INGESTED".equals(entry.get("status"))).count());
+            response.put("failed", entries.stream().filter(entry -> "FAILED".equals(entry.get("status"))).count());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error processing archive", e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Failed to process archive");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Starts a resumable upload. Parts are sent with PUT to the upload URL,
+     * each starting at the current offset, then the upload is completed with
+     * the file's SHA-256.
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<Map<String, Object>> createUpload(
+            @RequestParam String fileName,
+            @RequestParam String contentType,
+            @RequestParam long size,
+            @RequestParam(required = false) String sha256,
+            @RequestParam(required = false) String collectionId,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestHeader("X-User-Id") String userId) {
+        try {
+            UploadSession session = uploadSessionService.create(
+                    fileName, contentType, size, sha256, userId, collectionId, tags);
+            return ResponseEntity.status(HttpStatus.CREATED).body(uploadStatus(session));
+        } catch (Exception e) {
+            log.error("Error creating upload", e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Failed to create upload");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getUpload(
+            @PathVariable String uploadId,
+            @RequestHeader("X-User-Id") String userId) {
+        try {
+            return ResponseEntity.ok(uploadStatus(uploadSessionService.get(uploadId, userId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Appends the request body at {@code offset}. A wrong offset gets 409
+     * with the offset to resume from.
+     */
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> uploadPart(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            @RequestHeader("X-User-Id") String userId,
+            HttpServletRequest request) {
+        try {
+            long received = uploadSessionService.appendPart(uploadId, userId, offset, request.getInputStream());
+            Map<String, Object> response = new HashMap<>();
+            response.put("uploadId", uploadId);
+            response.put("offset", received);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            Map<String, Object> conflict = uploadStatus(uploadSessionService.get(uploadId, userId));
+            conflict.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(conflict);
+        } catch (Exception e) {
+            log.error("Error receiving part of upload {}", uploadId, e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Failed to store part");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<Map<String, Object>> completeUpload(
+            @PathVariable String uploadId,
+            @RequestParam(required = false) String sha256,
+            @RequestHeader("X-User-Id") String userId) {
+        try {
+            DocumentVersion job = uploadSessionService.complete(uploadId, userId, sha256);
+            return ResponseEntity.accepted().body(acceptedJob(job));
+        } catch (IllegalStateException e) {
+            Map<String, Object> conflict = new HashMap<>();
+            conflict.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(conflict);
+        } catch (Exception e) {
+            log.error("Error completing upload {}", uploadId, e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Failed to complete upload");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, String>> abortUpload(
+            @PathVariable String uploadId,
+            @RequestHeader("X-User-Id") String userId) {
+        try {
+            uploadSessionService.abort(uploadId, userId);
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Upload aborted");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    private Map<String, Object> uploadStatus(UploadSession session) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("uploadId", session.getId());
+        status.put("fileName", session.getFileName());
+        status.put("size", session.getTotalSize());
+        status.put("offset", session.getReceivedBytes());
+        status.put("status", session.getStatus());
+        status.put("uploadUrl", "/api/rag/uploads/" + session.getId());
+        if (session.getVersionId() != null) {
+            status.put("jobId", session.getVersionId());
+        }
+        return status;
+    }
+
+    private Map<String, Object> acceptedJob(DocumentVersion job) {
+        Long jobId = job.getId();
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", jobId);
+        response.put("documentId", job.getDocumentId());
+        response.put("status", job.getStatus());
+        response.put("statusUrl", "/api/rag/jobs/" + jobId);
+        response.put("eventsUrl", "/api/rag/jobs/" + jobId + "/events");
+        return response;
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(
+            @PathVariable Long jobId,
+            @RequestHeader("X-User-Id") String userId) {
+        if (!ownsJob(jobId, userId)) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> progress = jobTracker.getProgress(jobId);
+        if (progress == null) {
+            progress = versionRepository.findById(jobId).map(this::jobStatus).orElse(null);
+        }
+        return progress != null ? ResponseEntity.ok(progress) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(
+            @PathVariable Long jobId,
+            @RequestHeader("X-User-Id") String userId) throws IOException {
+        if (!ownsJob(jobId, userId)) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = jobTracker.subscribe(jobId);
+        if (emitter == null) {
+            // Not running on this node, send the recorded status and close
+            DocumentVersion version = versionRepository.findById(jobId).orElse(null);
+            if (version == null) {
+                return ResponseEntity.notFound().build();
+            }
+            emitter = new SseEmitter();
+            emitter.send(SseEmitter.event().name("progress").data(jobStatus(version)));
+            emitter.complete();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Jobs of other users are reported as not found, as uploads are, so job
+     * ids cannot be probed.
+     */
+    private boolean ownsJob(Long jobId, String userId) {
+        return jobRepository.findByVersionId(jobId)
+                .map(job -> userId.equals(job.getOwnerId()))
+                .orElse(false);
+    }
+
+    private Map<String, Object> jobStatus(DocumentVersion version) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", version.getId());
+        status.put("documentId", version.getDocumentId());
+        status.put("status", version.getStatus());
+        jobRepository.findByVersionId(version.getId()).ifPresent(job -> {
+            status.put("attempts", job.getAttempts());
+            if (job.getLastError() != null) {
+                status.put("error", job.getLastError());
+            }
+        });
+        return status;
+    }
+
     @PostMapping("/collections")
     public ResponseEntity<DocumentCollection> createCollection(
             @RequestBody DocumentCollection collection,
@@ -95,6 +318,51 @@ public class RagController {
         }
     }
 
+    /**
+     * Moves the document's chunks to the cold tier; it is then only searched
+     * by queries with {@code includeArchived}.
+     */
+    @PostMapping("/documents/{documentId}/archive")
+    public ResponseEntity<Map<String, Object>> archiveDocument(
+            @PathVariable String documentId,
+            @RequestHeader("X-User-Id") String userId) {
+        try {
+            int chunks = ragService.archiveDocument(documentId, userId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("documentId", documentId);
+            response.put("archived", true);
+            response.put("chunksMoved", chunks);
+            return ResponseEntity.ok(response);
+        } catch (RagException e) {
+            // Not found and not owned are answered by the exception handler
+            throw e;
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/documents/{documentId}/restore")
+    public ResponseEntity<Map<String, Object>> restoreDocument(
+            @PathVariable String documentId,
+            @RequestHeader("X-User-Id") String userId) {
+        try {
+            int chunks = ragService.restoreDocument(documentId, userId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("documentId", documentId);
+            response.put("archived", false);
+            response.put("chunksMoved", chunks);
+            return ResponseEntity.ok(response);
+        } catch (RagException e) {
+            throw e;
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     @GetMapping("/documents/{documentId}/versions")
     public ResponseEntity<List<DocumentVersion>> getVersions(@PathVariable String documentId) {
         return ResponseEntity.ok(versionRepository.findByDocumentIdOrderByVersionNumberDesc(documentId));
@@ -105,13 +373,14 @@ public class RagController {
             @RequestParam String query,
             @RequestParam(required = false) String modelName,
             @RequestParam(required = false) String collectionId,
-            @RequestParam(required = false) Integer version) {
+            @RequestParam(required = false) Integer version,
+            @RequestParam(required = false, defaultValue = "false") boolean includeArchived) {
         try {
             String answer;
             if (collectionId != null) {
-                answer = ragService.queryCollection(collectionId, query, modelName);
+                answer = ragService.queryCollection(collectionId, query, modelName, includeArchived);
             } else {
-                answer = ragService.queryDocument(query, modelName, version);
+                answer = ragService.queryDocument(query, modelName, version, includeArchived);
             }
 
             Map<String, Object> response = new HashMap<>();
@@ -127,6 +396,36 @@ public class RagController {
         }
     }
 
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Map<String, Object>>> getCacheStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>(cacheService.getStats());
+        stats.put("warmup", cacheWarmer.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/cache/answers/stats")
+    public ResponseEntity<Map<String, Object>> getAnswerCacheStats() {
+        return ResponseEntity.ok(answerCache.getStats());
+    }
+
+    @GetMapping("/ingestion/stats")
+    public ResponseEntity<Map<String, Map<String, Object>>> getIngestionStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>(ingestionPipeline.getStats());
+        stats.put("executor", ingestionExecutor.getStats());
+        stats.put("fairness", fairScheduler.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/purge/stats")
+    public ResponseEntity<Map<String, Object>> getPurgeStats() {
+        return ResponseEntity.ok(documentPurger.getStats());
+    }
+
+    @GetMapping("/maintenance/chunk-index")
+    public ResponseEntity<List<Map<String, Object>>> getChunkIndexPartitions() {
+        return ResponseEntity.ok(chunkIndexMaintenance.getPartitions());
+    }
+
     @DeleteMapping("/documents/{documentId}")
     public ResponseEntity<Map<String, String>> deleteDocument(
             @PathVariable String documentId,
@@ -136,6 +435,8 @@ public class RagController {
             Map<String, String> response = new HashMap<>();
             response.put("message", "Document deleted successfully");
             return ResponseEntity.ok(response);
+        } catch (RagException e) {
+            throw e;
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
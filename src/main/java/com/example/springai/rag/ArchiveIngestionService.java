@@ -0,0 +1,261 @@
+package com.example.springai.rag;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ingests a zip or tar stream of many documents in one request. Entries are
+ * read one after the other straight from the stream and chunked on the
+ * request thread; the chunks of all entries go through a single
+ * multi-document pipeline run, so small files share embedding batches and
+ * bulk loads. Metadata is committed in groups once all chunks are stored.
+ *
+ * An entry that cannot be read or is not a supported document is reported
+ * as failed without affecting the others. A failure to embed or store
+ * chunks fails the whole archive and removes what was stored.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ArchiveIngestionService {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final IngestionPipeline ingestionPipeline;
+    private final DocumentProcessor documentProcessor;
+    private final FileTypeValidator fileTypeValidator;
+    private final DocumentMetadataRepository documentMetadataRepository;
+    private final DocumentCollectionRepository collectionRepository;
+    private final DocumentTombstoneRepository tombstoneRepository;
+    private final CacheInvalidationBus invalidationBus;
+    private final TransactionTemplate transactionTemplate;
+
+    // Entries are held in memory while they are chunked
+    @Value("${app.rag.archive.max-entry-size-mb:50}")
+    private int maxEntrySizeMb;
+
+    @Value("${app.rag.archive.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${app.rag.archive.metadata-batch-size:200}")
+    private int metadataBatchSize;
+
+    /**
+     * @param format {@code zip}, {@code tar}, {@code tar.gz} or {@code tgz}
+     * @return the result of every document entry, in archive order
+     */
+    public List<Map<String, Object>> ingest(InputStream in, String format, String userId,
+            String collectionId, Set<String> tags) throws IOException {
+        DocumentCollection collection = collectionId != null
+                ? collectionRepository.findById(collectionId)
+                        .orElseThrow(() -> new IllegalArgumentException("Collection not found"))
+                : null;
+        ChunkingOptions options = documentProcessor.chunkingOptions(collection);
+        long start = System.currentTimeMillis();
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        List<DocumentMetadata> documents = new ArrayList<>();
+        Map<String, Map<String, Object>> resultsByDocument = new LinkedHashMap<>();
+        IngestionPipeline.MultiDocumentRun run = ingestionPipeline.startMultiDocumentRun(
+                (extracted, embedded, persisted) -> { });
+        try (ArchiveInputStream archive = open(in, format)) {
+            ArchiveEntry entry;
+            while ((entry = archive.getNextEntry()) != null) {
+                if (entry.isDirectory() || isHidden(entry.getName())) {
+                    continue;
+                }
+                if (results.size() >= maxEntries) {
+                    throw new IllegalArgumentException("Archive has more than " + maxEntries + " documents");
+                }
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("entry", entry.getName());
+                results.add(result);
+
+                String fileName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                List<TextChunk> chunks = new ArrayList<>();
+                long size;
+                try {
+                    size = extractEntry(archive, entry, fileName, options, chunks);
+                } catch (Exception e) {
+                    result.put("status", "FAILED");
+                    result.put("error", e.getMessage());
+                    continue;
+                }
+
+                String documentId = UUID.randomUUID().toString();
+                run.add(documentId, chunks);
+                documents.add(createMetadata(documentId, fileName, size, chunks.size(),
+                        userId, collectionId, tags));
+                result.put("documentId", documentId);
+                result.put("chunks", chunks.size());
+                resultsByDocument.put(documentId, result);
+            }
+        } catch (IOException | RuntimeException e) {
+            run.abort(e);
+            throw e;
+        }
+        run.finish();
+
+        saveMetadata(documents, collectionId, resultsByDocument);
+        log.info("Ingested {} of {} archive entries in {} ms", documents.size(), results.size(),
+                System.currentTimeMillis() - start);
+        return results;
+    }
+
+    private long extractEntry(ArchiveInputStream archive, ArchiveEntry entry, String fileName,
+            ChunkingOptions options, List<TextChunk> chunks) throws IOException {
+        if (!archive.canReadEntryData(entry)) {
+            throw new IllegalArgumentException("Entry uses an unsupported compression or encryption");
+        }
+        String mimeType = fileTypeValidator.mimeTypeFor(fileName);
+        if (mimeType == null) {
+            throw new IllegalArgumentException("Unsupported file type: " + fileName);
+        }
+        long maxBytes = maxEntrySizeMb * 1024L * 1024L;
+        if (entry.getSize() > maxBytes) {
+            throw new IllegalArgumentException("File size exceeds maximum limit of " + maxEntrySizeMb + "MB");
+        }
+        // One byte more than allowed tells an oversized entry of unknown size
+        byte[] content = archive.readNBytes((int) maxBytes + 1);
+        fileTypeValidator.validate(fileName, mimeType, content.length, maxBytes);
+
+        documentProcessor.processDocument(new EntrySource(fileName, mimeType, content), options, chunks::add);
+        return content.length;
+    }
+
+    /**
+     * Commits metadata in groups, revealing each group's documents with it.
+     * A group that cannot be committed is reported as failed and its chunks,
+     * still hidden, are left to the purger.
+     */
+    private void saveMetadata(List<DocumentMetadata> documents, String collectionId,
+            Map<String, Map<String, Object>> resultsByDocument) {
+        for (int from = 0; from < documents.size(); from += metadataBatchSize) {
+            List<DocumentMetadata> group = documents.subList(from, Math.min(from + metadataBatchSize, documents.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    documentMetadataRepository.saveAll(group);
+                    group.forEach(metadata -> tombstoneRepository.revealDocument(metadata.getDocumentId()));
+                    if (collectionId != null) {
+                        DocumentCollection collection = collectionRepository.findById(collectionId)
+                                .orElseThrow(() -> new IllegalArgumentException("Collection not found"));
+                        collection.setDocumentCount(collection.getDocumentCount() + group.size());
+                        collectionRepository.save(collection);
+                    }
+                    group.forEach(metadata -> invalidationBus.documentChanged(metadata.getDocumentId(), collectionId));
+                });
+                group.forEach(metadata -> resultsByDocument.get(metadata.getDocumentId()).put("status", "INGESTED"));
+            } catch (Exception e) {
+                log.error("Failed to store metadata of {} archive entries", group.size(), e);
+                for (DocumentMetadata metadata : group) {
+                    Map<String, Object> result = resultsByDocument.get(metadata.getDocumentId());
+                    result.put("status", "FAILED");
+                    result.put("error", "Failed to store document metadata");
+                    result.remove("documentId");
+                    try {
+                        transactionTemplate.executeWithoutResult(
+                                status -> tombstoneRepository.discardPending(metadata.getDocumentId()));
+                    } catch (Exception cleanupFailure) {
+                        log.error("Failed to discard chunks of document {}", metadata.getDocumentId(), cleanupFailure);
+                    }
+                }
+            }
+        }
+    }
+
+    private DocumentMetadata createMetadata(String documentId, String fileName, long size, int chunkCount,
+            String userId, String collectionId, Set<String> tags) {
+        DocumentMetadata metadata = new DocumentMetadata();
+        metadata.setDocumentId(documentId);
+        metadata.setFileName(fileName);
+        metadata.setFileType(fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase());
+        metadata.setChunkCount(chunkCount);
+        metadata.setUploadTimestamp(LocalDateTime.now());
+        metadata.setOwnerId(userId);
+        metadata.setFileSize(size);
+        metadata.setMimeType(fileTypeValidator.mimeTypeFor(fileName));
+        metadata.setCollectionId(collectionId);
+        metadata.setTags(tags != null ? new HashSet<>(tags) : new HashSet<>());
+        metadata.setProcessingStatus(DocumentMetadata.ProcessingStatus.COMPLETED);
+        return metadata;
+    }
+
+    private ArchiveInputStream open(InputStream in, String format) throws IOException {
+        InputStream buffered = new BufferedInputStream(in, STREAM_BUFFER_SIZE);
+        String normalized = format != null ? format.toLowerCase() : "";
+        if (normalized.equals("zip")) {
+            // Stored entries followed by a data descriptor are common in
+            // zips written as streams
+            return new ZipArchiveInputStream(buffered, "UTF-8", true, true);
+        } else if (normalized.equals("tar")) {
+            return new TarArchiveInputStream(buffered);
+        } else if (normalized.equals("tar.gz") || normalized.equals("tgz")) {
+            return new TarArchiveInputStream(new GzipCompressorInputStream(buffered));
+        }
+        throw new IllegalArgumentException("Unsupported archive format: " + format);
+    }
+
+    // Resource forks and other metadata added by archivers
+    private boolean isHidden(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        return entryName.startsWith("__MACOSX/") || fileName.startsWith(".");
+    }
+
+    /**
+     * An archive entry read into memory.
+     */
+    private static final class EntrySource implements DocumentSource {
+
+        private final String filename;
+        private final String contentType;
+        private final byte[] content;
+
+        EntrySource(String filename, String contentType, byte[] content) {
+            this.filename = filename;
+            this.contentType = contentType;
+            this.content = content;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(content);
+        }
+    }
+}
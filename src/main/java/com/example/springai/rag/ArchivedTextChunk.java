@@ -0,0 +1,51 @@
+package com.example.springai.rag;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Chunk of an archived document, moved out of {@code text_chunks} so it no
+ * longer takes part in the vector index or regular searches. Rows keep the
+ * id they had in the hot table and move back unchanged on restore. The
+ * table has no vector index; searches that include archived documents scan
+ * it. Contents and embeddings are large enough to be stored compressed in
+ * TOAST.
+ */
+@Data
+@Entity
+@Table(name = "text_chunks_archive", indexes = {
+    @Index(name = "idx_text_chunks_archive_document", columnList = "document_id")
+})
+@NoArgsConstructor
+public class ArchivedTextChunk {
+
+    @Id
+    private Long id;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "embedding", columnDefinition = "float[]")
+    private float[] embedding;
+
+    @Column(name = "document_id")
+    private String documentId;
+
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "first_version")
+    private Integer firstVersion;
+
+    @Column(name = "last_version")
+    private Integer lastVersion;
+
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,57 @@
+package com.example.springai.rag;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ArchivedTextChunkRepository extends JpaRepository<ArchivedTextChunk, Long> {
+
+    // Moves are single statements, so a document's chunks are never split
+    // across the two tables
+    @Modifying
+    @Query(value = "WITH moved AS (DELETE FROM text_chunks WHERE document_id = :documentId RETURNING *) "
+            + "INSERT INTO text_chunks_archive "
+            + "(id, content, embedding, document_id, chunk_index, content_hash, first_version, last_version, archived_at) "
+            + "SELECT id, content, embedding, document_id, chunk_index, content_hash, first_version, last_version, now() "
+            + "FROM moved", nativeQuery = true)
+    int archiveDocument(@Param("documentId") String documentId);
+
+    @Modifying
+    @Query(value = "WITH moved AS (DELETE FROM text_chunks_archive WHERE document_id = :documentId RETURNING *) "
+            + "INSERT INTO text_chunks "
+            + "(id, content, embedding, document_id, chunk_index, content_hash, first_version, last_version) "
+            + "SELECT id, content, embedding, document_id, chunk_index, content_hash, first_version, last_version "
+            + "FROM moved", nativeQuery = true)
+    int restoreDocument(@Param("documentId") String documentId);
+
+    @Query(value = "SELECT id, document_id AS \"documentId\" FROM text_chunks_archive "
+            + "WHERE document_id = :documentId AND COALESCE(first_version, 1) <= :version "
+            + "AND (last_version IS NULL OR last_version >= :version) "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) "
+            + "LIMIT :limit", nativeQuery = true)
+    List<ChunkReference> findSimilarChunkRefsForVersion(
+            @Param("queryEmbedding") float[] queryEmbedding,
+            @Param("documentId") String documentId,
+            @Param("version") int version,
+            @Param("limit") int limit);
+
+    @Query(value = "SELECT id, document_id AS \"documentId\" FROM text_chunks_archive "
+            + "WHERE document_id = :documentId AND id BETWEEN :chunkStartId AND :chunkEndId "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) "
+            + "LIMIT :limit", nativeQuery = true)
+    List<ChunkReference> findSimilarChunkRefsInRange(
+            @Param("queryEmbedding") float[] queryEmbedding,
+            @Param("documentId") String documentId,
+            @Param("chunkStartId") Long chunkStartId,
+            @Param("chunkEndId") Long chunkEndId,
+            @Param("limit") int limit);
+
+    @Query("SELECT t.id, t.content FROM ArchivedTextChunk t WHERE t.id IN :ids")
+    List<Object[]> findContentsByIds(@Param("ids") Collection<Long> ids);
+}
@@ -2,17 +2,20 @@ package com.example.springai.rag;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -20,80 +23,220 @@ import java.util.concurrent.Executors;
 public class BatchProcessingService {
 
     private final DocumentProcessor documentProcessor;
-    private final EmbeddingService embeddingService;
-    private final TextChunkRepository textChunkRepository;
+    private final IngestionPipeline ingestionPipeline;
+    private final IngestionJobTracker jobTracker;
+    private final FileTypeValidator fileTypeValidator;
+    private final RagService ragService;
     private final DocumentMetadataRepository documentMetadataRepository;
     private final DocumentVersionRepository documentVersionRepository;
+    private final DocumentCollectionRepository collectionRepository;
+    private final IngestionJobQueue jobQueue;
+    private final IngestionCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DocumentTombstoneRepository tombstoneRepository;
+    private final DocumentLocks documentLocks;
 
-    private static final int BATCH_SIZE = 50;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(5);
+    @Value("${app.rag.ingestion.spool-dir:${java.io.tmpdir}/rag-spool}")
+    private String spoolDir;
 
-    @Async
-    public CompletableFuture<String> processBatchDocument(MultipartFile file, String userId) throws IOException {
+    /**
+     * Validates and spools the upload, records a pending version for it and
+     * queues the ingestion job. The version id is the job id clients poll.
+     * Any node may claim the job, so the spool directory has to be shared
+     * storage when several nodes run; {@link SpoolDirectoryCheck} verifies it.
+     */
+    @Transactional
+    public DocumentVersion acceptBatchDocument(MultipartFile file, String userId,
+            String collectionId, Set<String> tags) throws IOException {
+        fileTypeValidator.validateFile(file);
+
+        SpooledDocument source = SpooledDocument.spool(file, Path.of(spoolDir));
+        try {
+            return acceptSpooledDocument(source, userId, collectionId, tags);
+        } catch (RuntimeException e) {
+            source.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues ingestion of a file already in the spool directory, such as a
+     * completed resumable upload. The job owns the file from here on.
+     */
+    @Transactional
+    public DocumentVersion acceptSpooledDocument(SpooledDocument source, String userId,
+            String collectionId, Set<String> tags) {
         String documentId = java.util.UUID.randomUUID().toString();
         DocumentVersion version = createInitialVersion(documentId);
+        jobQueue.enqueue(version, source, userId, collectionId, tags);
+        return version;
+    }
 
-        try {
-            // Process document in chunks
-            List<TextChunk> allChunks = documentProcessor.processDocument(file);
-            int totalChunks = allChunks.size();
-
-            // Update version with total chunks
-            version.setStatus(DocumentVersion.ProcessingStatus.PROCESSING);
-            documentVersionRepository.save(version);
-
-            // Process chunks in batches
-            List<CompletableFuture<Void>> batchFutures = new ArrayList<>();
-            for (int i = 0; i < totalChunks; i += BATCH_SIZE) {
-                int end = Math.min(i + BATCH_SIZE, totalChunks);
-                List<TextChunk> batch = allChunks.subList(i, end);
-
-                CompletableFuture<Void> batchFuture = CompletableFuture.runAsync(()
-                        -> processBatch(batch, documentId), executorService);
-                batchFutures.add(batchFuture);
-            }
+    /**
+     * Runs a claimed job. Failures are reported to the queue, which decides
+     * whether the job is retried; the spooled upload is kept until the job
+     * completes or fails for good.
+     */
+    public void processJob(IngestionJob job, String workerId) {
+        String documentId = job.getDocumentId();
+        SpooledDocument source = new SpooledDocument(Path.of(job.getSpoolPath()),
+                job.getFileName(), job.getContentType(), job.getFileSize());
+        DocumentVersion version = documentVersionRepository.findById(job.getVersionId()).orElse(null);
+        if (version == null) {
+            // Document deleted while queued
+            jobQueue.fail(job.getId(), workerId, "Version not found: " + job.getVersionId());
+            return;
+        }
+        jobTracker.register(version);
 
-            // Wait for all batches to complete
-            CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture[0])).join();
+        try {
+            updateStatus(version, DocumentVersion.ProcessingStatus.PROCESSING, version.getChangeDescription());
 
-            // Create document metadata
-            createDocumentMetadata(file, documentId, userId, totalChunks);
+            // Extract, embed and store through the pipeline, using the
+            // collection's chunking options
+            String collectionId = job.getCollectionId();
+            DocumentCollection collection = collectionId != null
+                    ? collectionRepository.findById(collectionId).orElse(null)
+                    : null;
+            int totalChunks = ingestionPipeline.ingest(documentId, source,
+                    documentProcessor.chunkingOptions(collection),
+                    (extracted, embedded, persisted) ->
+                            jobTracker.progress(version.getId(), extracted, embedded, persisted),
+                    checkpoints(version.getId()));
 
-            // Update version status
-            version.setStatus(DocumentVersion.ProcessingStatus.COMPLETED);
-            documentVersionRepository.save(version);
+            Completion completion = documentLocks.withDocumentLock(documentId,
+                    () -> completeJob(job, workerId, source, collection, totalChunks));
+            if (completion == Completion.LEASE_LOST) {
+                // The worker now holding the job finishes it
+                jobTracker.forget(version.getId());
+                return;
+            }
+            if (completion == Completion.DELETED) {
+                jobTracker.fail(version.getId(), "Document deleted");
+                source.delete();
+                log.info("Document {} was deleted while it was being ingested", documentId);
+                return;
+            }
+            jobTracker.complete(version.getId(), totalChunks);
+            source.delete();
 
             log.info("Batch processing completed for document: {}", documentId);
-            return CompletableFuture.completedFuture(documentId);
-
         } catch (Exception e) {
             log.error("Error in batch processing for document: {}", documentId, e);
-            version.setStatus(DocumentVersion.ProcessingStatus.FAILED);
-            version.setChangeDescription("Failed: " + e.getMessage());
-            documentVersionRepository.save(version);
-            throw e;
+            boolean retrying = jobQueue.fail(job.getId(), workerId, e.getMessage());
+            if (retrying) {
+                updateStatus(version, DocumentVersion.ProcessingStatus.PENDING, "Retrying after: " + e.getMessage());
+                jobTracker.forget(version.getId());
+            } else {
+                discardPartialIngestion(version);
+                updateStatus(version, DocumentVersion.ProcessingStatus.FAILED, "Failed: " + e.getMessage());
+                jobTracker.fail(version.getId(), e.getMessage());
+                source.delete();
+            }
         }
     }
 
-    @Transactional
-    protected void processBatch(List<TextChunk> chunks, String documentId) {
-        try {
-            // Generate embeddings for the batch
-            embeddingService.generateEmbeddings(chunks);
+    /**
+     * Records the failure of a job the queue gave up on without a worker
+     * reporting it, and removes what it left behind.
+     */
+    public void abandonJob(IngestionJob job) {
+        DocumentVersion version = documentVersionRepository.findById(job.getVersionId()).orElse(null);
+        if (version != null) {
+            discardPartialIngestion(version);
+            updateStatus(version, DocumentVersion.ProcessingStatus.FAILED, "Failed: " + job.getLastError());
+            jobTracker.fail(version.getId(), job.getLastError());
+        }
+        new SpooledDocument(Path.of(job.getSpoolPath()), job.getFileName(),
+                job.getContentType(), job.getFileSize()).delete();
+    }
+
+    /**
+     * Records the document, reveals it and completes the job in one
+     * transaction, under the document's lock. A job claimed again after a
+     * crash therefore either redoes all of it or finds the job completed,
+     * and a document deleted meanwhile is not recreated; its chunks are left
+     * to the purger.
+     */
+    private Completion completeJob(IngestionJob job, String workerId, DocumentSource source,
+            DocumentCollection collection, int totalChunks) {
+        String documentId = job.getDocumentId();
+        if (!jobQueue.complete(job.getId(), workerId)) {
+            return Completion.LEASE_LOST;
+        }
+        checkpointRepository.deleteByVersionId(job.getVersionId());
+        DocumentVersion version = documentVersionRepository.findById(job.getVersionId()).orElse(null);
+        if (version == null || tombstoneRepository.isDeleted(documentId)) {
+            tombstoneRepository.discardPending(documentId);
+            return Completion.DELETED;
+        }
+
+        createDocumentMetadata(source, documentId, job.getOwnerId(), totalChunks);
+        if (collection != null) {
+            ragService.addToCollection(documentId, job.getCollectionId(), parseTags(job.getTags()));
+        }
+        version.setStatus(DocumentVersion.ProcessingStatus.COMPLETED);
+        documentVersionRepository.save(version);
+        tombstoneRepository.revealDocument(documentId);
+        return Completion.COMPLETED;
+    }
+
+    private void updateStatus(DocumentVersion version, DocumentVersion.ProcessingStatus newStatus,
+            String description) {
+        version.setStatus(newStatus);
+        version.setChangeDescription(description);
+        transactionTemplate.executeWithoutResult(
+                status -> documentVersionRepository.updateStatus(version.getId(), newStatus, description));
+    }
 
-            // Set document ID for each chunk
-            chunks.forEach(chunk -> chunk.setDocumentId(documentId));
+    /**
+     * Checkpoints of the version's persisted batches, so a retried or
+     * re-claimed job embeds and stores only the batches that are missing.
+     * The document is extracted and chunked again to reach them.
+     */
+    private IngestionPipeline.BatchCheckpoints checkpoints(Long versionId) {
+        BitSet persisted = new BitSet();
+        List<IngestionCheckpoint> existing = checkpointRepository.findByVersionId(versionId);
+        existing.forEach(checkpoint -> persisted.set(checkpoint.getFirstChunk(),
+                checkpoint.getFirstChunk() + checkpoint.getChunkCount()));
+        if (!existing.isEmpty()) {
+            log.info("Resuming version {} with {} chunks already persisted", versionId, persisted.cardinality());
+        }
+
+        return new IngestionPipeline.BatchCheckpoints() {
+            @Override
+            public boolean isPersisted(int chunkIndex) {
+                return persisted.get(chunkIndex);
+            }
 
-            // Save batch to database
-            textChunkRepository.saveAll(chunks);
+            @Override
+            public void record(int firstChunk, int chunkCount) {
+                checkpointRepository.save(new IngestionCheckpoint(
+                        null, versionId, firstChunk, chunkCount, LocalDateTime.now()));
+            }
+        };
+    }
 
-            log.debug("Processed batch of {} chunks for document {}", chunks.size(), documentId);
+    // The chunks stored so far are still hidden; the purger removes them
+    private void discardPartialIngestion(DocumentVersion version) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                tombstoneRepository.discardPending(version.getDocumentId());
+                checkpointRepository.deleteByVersionId(version.getId());
+            });
         } catch (Exception e) {
-            log.error("Error processing batch for document {}", documentId, e);
-            throw new RuntimeException("Batch processing failed", e);
+            log.error("Failed to remove partial chunks of document {}", version.getDocumentId(), e);
         }
     }
 
+    private enum Completion {
+        COMPLETED, DELETED, LEASE_LOST
+    }
+
+    private Set<String> parseTags(String tags) {
+        return tags != null ? new HashSet<>(Arrays.asList(tags.split(","))) : new HashSet<>();
+    }
+
     private DocumentVersion createInitialVersion(String documentId) {
         DocumentVersion version = new DocumentVersion();
         version.setDocumentId(documentId);
@@ -103,16 +246,16 @@ public class BatchProcessingService {
         return documentVersionRepository.save(version);
     }
 
-    private void createDocumentMetadata(MultipartFile file, String documentId, String userId, int totalChunks) {
+    private void createDocumentMetadata(DocumentSource source, String documentId, String userId, int totalChunks) {
         DocumentMetadata metadata = new DocumentMetadata();
         metadata.setDocumentId(documentId);
-        metadata.setFileName(file.getOriginalFilename());
-        metadata.setFileType(getFileExtension(file.getOriginalFilename()));
+        metadata.setFileName(source.getFilename());
+        metadata.setFileType(getFileExtension(source.getFilename()));
         metadata.setChunkCount(totalChunks);
         metadata.setUploadTimestamp(java.time.LocalDateTime.now());
         metadata.setOwnerId(userId);
-        metadata.setFileSize(file.getSize());
-        metadata.setMimeType(file.getContentType());
+        metadata.setFileSize(source.getSize());
+        metadata.setMimeType(source.getContentType());
         metadata.setProcessingStatus(DocumentMetadata.ProcessingStatus.COMPLETED);
 
         documentMetadataRepository.save(metadata);
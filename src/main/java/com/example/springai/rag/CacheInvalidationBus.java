@@ -0,0 +1,278 @@
+package com.example.springai.rag;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Propagates document and collection changes to the caches of every node.
+ *
+ * Changes are applied to the local caches immediately and queued; the queue
+ * is flushed periodically as {@code pg_notify} messages, so a burst of
+ * changes to the same document results in one notification. Each node
+ * LISTENs on the channel from a dedicated connection and republishes
+ * messages from other nodes as {@link CacheInvalidationEvent}s. After the
+ * listen connection is lost, local caches are cleared, since notifications
+ * sent in the meantime are gone.
+ *
+ * Message payload: the sender node id on the first line, then one
+ * {@code d:<documentId>} or {@code c:<collectionId>} line per change.
+ * Changes whose notification fails are queued again for the next flush.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationBus {
+
+    // NOTIFY payloads must stay below 8000 bytes, measured in UTF-8
+    static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.rag.cache.invalidation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rag.cache.invalidation.channel:rag_cache_invalidation}")
+    private String channel;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private Set<String> pendingDocuments = new HashSet<>();
+    private Set<String> pendingCollections = new HashSet<>();
+
+    private volatile boolean running;
+    private volatile Connection listenConnection;
+    private Thread listenerThread;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "rag-cache-invalidation");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        flush();
+        running = false;
+        listenerThread.interrupt();
+        closeQuietly(listenConnection);
+    }
+
+    public void documentChanged(String documentId, String collectionId) {
+        Set<String> collections = collectionId != null ? Set.of(collectionId) : Set.of();
+        afterCommit(() -> {
+            eventPublisher.publishEvent(new CacheInvalidationEvent(
+                    Set.of(documentId), collections, false, false));
+            synchronized (this) {
+                pendingDocuments.add(documentId);
+                pendingCollections.addAll(collections);
+            }
+        });
+    }
+
+    public void collectionChanged(String collectionId) {
+        afterCommit(() -> {
+            eventPublisher.publishEvent(new CacheInvalidationEvent(
+                    Set.of(), Set.of(collectionId), false, false));
+            synchronized (this) {
+                pendingCollections.add(collectionId);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.rag.cache.invalidation.flush-interval-ms:200}")
+    public void flush() {
+        Set<String> documents;
+        Set<String> collections;
+        synchronized (this) {
+            if (pendingDocuments.isEmpty() && pendingCollections.isEmpty()) {
+                return;
+            }
+            documents = pendingDocuments;
+            collections = pendingCollections;
+            pendingDocuments = new HashSet<>();
+            pendingCollections = new HashSet<>();
+        }
+        if (!enabled) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        documents.forEach(id -> lines.add("d:" + id));
+        collections.forEach(id -> lines.add("c:" + id));
+        List<String> payloads = toPayloads(nodeId, lines);
+        for (int i = 0; i < payloads.size(); i++) {
+            try {
+                jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", Object.class, channel, payloads.get(i));
+            } catch (Exception e) {
+                log.error("Failed to publish cache invalidation, retrying with the next flush", e);
+                requeue(payloads.subList(i, payloads.size()));
+                return;
+            }
+        }
+        log.debug("Published invalidation of {} documents and {} collections",
+                documents.size(), collections.size());
+    }
+
+    private void requeue(List<String> payloads) {
+        synchronized (this) {
+            for (String payload : payloads) {
+                Payload unsent = parse(payload);
+                pendingDocuments.addAll(unsent.documentIds());
+                pendingCollections.addAll(unsent.collectionIds());
+            }
+        }
+    }
+
+    // Invalidating before commit would let concurrent readers cache the old rows again
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    static List<String> toPayloads(String nodeId, List<String> lines) {
+        List<String> payloads = new ArrayList<>();
+        int headerBytes = utf8Length(nodeId);
+        StringBuilder payload = new StringBuilder(nodeId);
+        int payloadBytes = headerBytes;
+        for (String line : lines) {
+            int lineBytes = utf8Length(line) + 1;
+            if (payloadBytes + lineBytes > MAX_PAYLOAD_BYTES && payloadBytes > headerBytes) {
+                payloads.add(payload.toString());
+                payload = new StringBuilder(nodeId);
+                payloadBytes = headerBytes;
+            }
+            payload.append('\n').append(line);
+            payloadBytes += lineBytes;
+        }
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    static Payload parse(String payload) {
+        String[] lines = payload.split("\n");
+        Set<String> documents = new HashSet<>();
+        Set<String> collections = new HashSet<>();
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.startsWith("d:")) {
+                documents.add(line.substring(2));
+            } else if (line.startsWith("c:")) {
+                collections.add(line.substring(2));
+            }
+        }
+        return new Payload(lines[0], documents, collections);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    record Payload(String nodeId, Set<String> documentIds, Set<String> collectionIds) {
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                listenConnection = connection;
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    log.warn("Reconnected cache invalidation listener, clearing local caches");
+                    eventPublisher.publishEvent(CacheInvalidationEvent.everything(true));
+                }
+                connectedBefore = true;
+                log.info("Listening for cache invalidations on channel {} as node {}", channel, nodeId);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            apply(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Cache invalidation listener failed, reconnecting", e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } finally {
+                listenConnection = null;
+            }
+        }
+    }
+
+    private void apply(String payload) {
+        Payload remote = parse(payload);
+        if (nodeId.equals(remote.nodeId())) {
+            return;
+        }
+        log.debug("Applying remote invalidation from node {}", remote.nodeId());
+        eventPublisher.publishEvent(new CacheInvalidationEvent(
+                remote.documentIds(), remote.collectionIds(), false, true));
+    }
+
+    private void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Error closing cache invalidation connection", e);
+        }
+    }
+}
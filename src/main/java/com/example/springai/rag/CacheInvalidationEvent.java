@@ -0,0 +1,26 @@
+package com.example.springai.rag;
+
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Application event telling local caches which documents and collections
+ * changed. Raised by {@link CacheInvalidationBus} both for local changes and
+ * for changes received from other nodes. {@code all} asks caches to drop
+ * everything, used when notifications may have been missed.
+ */
+@Data
+@AllArgsConstructor
+public class CacheInvalidationEvent {
+
+    private Set<String> documentIds;
+    private Set<String> collectionIds;
+    private boolean all;
+    private boolean remote;
+
+    public static CacheInvalidationEvent everything(boolean remote) {
+        return new CacheInvalidationEvent(Set.of(), Set.of(), true, remote);
+    }
+}
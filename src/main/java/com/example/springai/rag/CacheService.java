@@ -1,19 +1,33 @@
 package com.example.springai.rag;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Document metadata cache and access to chunk contents. Metadata is held in
+ * a Caffeine (W-TinyLFU) cache, so admission and eviction are O(1) and
+ * expiry happens in place rather than through a periodic sweep. Chunk
+ * contents used to build prompts are served by id from the off-heap
+ * {@link ChunkContentStore}.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -21,113 +35,120 @@ public class CacheService {
 
     private final TextChunkRepository textChunkRepository;
     private final DocumentMetadataRepository documentMetadataRepository;
+    private final ChunkContentStore contentStore;
+    private final ArchivedTextChunkRepository archivedChunkRepository;
+
+    @Value("${app.rag.cache.max-documents:1000}")
+    private long maxDocuments;
 
-    // In-memory cache for quick access to frequently used chunks
-    private final Map<String, CacheEntry<TextChunk>> chunkCache = new ConcurrentHashMap<>();
-    private final Map<String, CacheEntry<DocumentMetadata>> metadataCache = new ConcurrentHashMap<>();
+    @Value("${app.rag.cache.expire-after-access-minutes:30}")
+    private long expireAfterAccessMinutes;
 
-    private static final int MAX_CACHE_SIZE = 1000;
-    private static final long CACHE_EXPIRY_MINUTES = 30;
+    private Cache<String, DocumentMetadata> metadataCache;
 
-    @Cacheable(value = "chunks", key = "#documentId + '-' + #chunkIndex")
-    public TextChunk getChunk(String documentId, int chunkIndex) {
-        String cacheKey = documentId + "-" + chunkIndex;
-        CacheEntry<TextChunk> entry = chunkCache.get(cacheKey);
+    @PostConstruct
+    public void init() {
+        metadataCache = Caffeine.newBuilder()
+                .maximumSize(maxDocuments)
+                .expireAfterAccess(Duration.ofMinutes(expireAfterAccessMinutes))
+                .recordStats()
+                .build();
+    }
 
-        if (entry != null && !isExpired(entry)) {
-            log.debug("Cache hit for chunk: {}", cacheKey);
-            return entry.getData();
+    /**
+     * Returns chunk contents in the order of the given ids, reading from the
+     * off-heap content store and loading misses from the database in one
+     * query.
+     */
+    public List<String> getChunkContents(List<Long> chunkIds) {
+        Map<Long, String> contents = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long chunkId : chunkIds) {
+            String content = contentStore.get(chunkId);
+            if (content != null) {
+                contents.put(chunkId, content);
+            } else {
+                missing.add(chunkId);
+            }
         }
 
-        log.debug("Cache miss for chunk: {}", cacheKey);
-        List<TextChunk> chunks = textChunkRepository.findByDocumentId(documentId);
-        if (chunks.size() > chunkIndex) {
-            TextChunk chunk = chunks.get(chunkIndex);
-            cacheChunk(cacheKey, chunk);
-            return chunk;
+        if (!missing.isEmpty()) {
+            for (Object[] row : textChunkRepository.findContentsByIds(missing)) {
+                Long chunkId = (Long) row[0];
+                String content = (String) row[1];
+                contentStore.put(chunkId, content);
+                contents.put(chunkId, content);
+            }
+            // Chunks of archived documents, which keep their ids in the cold tier
+            missing.removeIf(contents::containsKey);
+            if (!missing.isEmpty()) {
+                for (Object[] row : archivedChunkRepository.findContentsByIds(missing)) {
+                    contents.put((Long) row[0], (String) row[1]);
+                }
+            }
         }
 
-        return null;
+        return chunkIds.stream()
+                .map(contents::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
-    @Cacheable(value = "documents", key = "#documentId")
     public DocumentMetadata getDocumentMetadata(String documentId) {
-        CacheEntry<DocumentMetadata> entry = metadataCache.get(documentId);
-
-        if (entry != null && !isExpired(entry)) {
-            log.debug("Cache hit for document metadata: {}", documentId);
-            return entry.getData();
-        }
-
-        log.debug("Cache miss for document metadata: {}", documentId);
-        return documentMetadataRepository.findById(documentId)
-                .map(metadata -> {
-                    cacheMetadata(documentId, metadata);
-                    return metadata;
-                })
-                .orElse(null);
+        return metadataCache.get(documentId,
+                id -> documentMetadataRepository.findById(id).orElse(null));
     }
 
-    @CachePut(value = "chunks", key = "#cacheKey")
-    public void cacheChunk(String cacheKey, TextChunk chunk) {
-        if (chunkCache.size() >= MAX_CACHE_SIZE) {
-            evictOldestEntry(chunkCache);
+    /**
+     * Loads a document's metadata and the contents of its current chunks
+     * into the caches. Returns the number of chunks loaded.
+     */
+    public int warmDocument(String documentId) {
+        getDocumentMetadata(documentId);
+        List<Object[]> contents = textChunkRepository.findCurrentContents(documentId);
+        for (Object[] row : contents) {
+            contentStore.put((Long) row[0], (String) row[1]);
         }
-        chunkCache.put(cacheKey, new CacheEntry<>(chunk));
+        return contents.size();
     }
 
-    @CachePut(value = "documents", key = "#documentId")
     public void cacheMetadata(String documentId, DocumentMetadata metadata) {
-        if (metadataCache.size() >= MAX_CACHE_SIZE) {
-            evictOldestEntry(metadataCache);
-        }
-        metadataCache.put(documentId, new CacheEntry<>(metadata));
-    }
-
-    @CacheEvict(value = {"chunks", "documents"}, allEntries = true)
-    @Scheduled(fixedRate = 300000) // Run every 5 minutes
-    public void cleanCache() {
-        log.debug("Starting cache cleanup");
-        chunkCache.entrySet().removeIf(entry -> isExpired(entry.getValue()));
-        metadataCache.entrySet().removeIf(entry -> isExpired(entry.getValue()));
+        metadataCache.put(documentId, metadata);
     }
 
-    @CacheEvict(value = {"chunks", "documents"}, key = "#documentId")
     public void evictDocument(String documentId) {
-        // Remove from in-memory caches
-        chunkCache.keySet().removeIf(key -> key.startsWith(documentId + "-"));
-        metadataCache.remove(documentId);
+        metadataCache.invalidate(documentId);
         log.info("Evicted document {} from cache", documentId);
     }
 
-    private <T> void evictOldestEntry(Map<String, CacheEntry<T>> cache) {
-        cache.entrySet().stream()
-                .min((e1, e2) -> e1.getValue().getTimestamp().compareTo(e2.getValue().getTimestamp()))
-                .ifPresent(entry -> cache.remove(entry.getKey()));
+    public void evictAll() {
+        metadataCache.invalidateAll();
+        log.info("Evicted all documents from cache");
     }
 
-    private boolean isExpired(CacheEntry<?> entry) {
-        return entry.getTimestamp()
-                .plusMinutes(CACHE_EXPIRY_MINUTES)
-                .isBefore(LocalDateTime.now());
-    }
-
-    private static class CacheEntry<T> {
-
-        private final T data;
-        private final LocalDateTime timestamp;
-
-        public CacheEntry(T data) {
-            this.data = data;
-            this.timestamp = LocalDateTime.now();
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        if (event.isAll()) {
+            evictAll();
+            return;
         }
+        event.getDocumentIds().forEach(this::evictDocument);
+    }
 
-        public T getData() {
-            return data;
-        }
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("documents", toMap(metadataCache.stats(), metadataCache.estimatedSize()));
+        stats.put("contents", contentStore.getStats());
+        return stats;
+    }
 
-        public LocalDateTime getTimestamp() {
-            return timestamp;
-        }
+    private Map<String, Object> toMap(CacheStats cacheStats, long size) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", size);
+        result.put("hitCount", cacheStats.hitCount());
+        result.put("missCount", cacheStats.missCount());
+        result.put("hitRate", cacheStats.hitRate());
+        result.put("evictionCount", cacheStats.evictionCount());
+        return result;
     }
 }
@@ -0,0 +1,145 @@
+package com.example.springai.rag;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pre-loads the caches with the most accessed documents on startup, and
+ * primes the query path: one query embedding is computed, which loads the
+ * embedding model, and one similarity search is run with it, which reads
+ * the vector index's centroids into Postgres's buffers. Documents are warmed
+ * through {@link CacheService#warmDocument}, their metadata and chunk
+ * contents; the semantic answer cache is not warmed, it holds answers only
+ * after queries were asked.
+ *
+ * Runs as an {@link ApplicationRunner}, so Spring Boot reports the
+ * application ready only after warm-up finished or the timeout elapsed. The
+ * documents are loaded in parallel on background threads; anything still
+ * loading at the timeout keeps going after the node is ready, until the
+ * node shuts down.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheWarmer implements ApplicationRunner {
+
+    private static final String WARMUP_QUERY = "warm-up";
+
+    private final DocumentMetadataRepository documentMetadataRepository;
+    private final CacheService cacheService;
+    private final EmbeddingService embeddingService;
+    private final TextChunkRepository textChunkRepository;
+
+    @Value("${app.rag.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rag.warmup.top-documents:100}")
+    private int topDocuments;
+
+    @Value("${app.rag.warmup.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.rag.warmup.timeout-seconds:120}")
+    private long timeoutSeconds;
+
+    private volatile ExecutorService executor;
+    private final AtomicInteger warmedDocuments = new AtomicInteger();
+    private final AtomicInteger warmedChunks = new AtomicInteger();
+    private final AtomicInteger failedDocuments = new AtomicInteger();
+    private volatile boolean queryPathWarmed;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || topDocuments <= 0) {
+            return;
+        }
+
+        List<DocumentMetadata> hottest = documentMetadataRepository
+                .findByAccessCountGreaterThanOrderByAccessCountDesc(0L, PageRequest.of(0, topDocuments));
+
+        long start = System.currentTimeMillis();
+        executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "rag-cache-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<CompletableFuture<?>> tasks = new ArrayList<>();
+        tasks.add(CompletableFuture.runAsync(this::warmQueryPath, executor));
+        for (DocumentMetadata metadata : hottest) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                try {
+                    warmedChunks.addAndGet(cacheService.warmDocument(metadata.getDocumentId()));
+                    warmedDocuments.incrementAndGet();
+                } catch (Exception e) {
+                    failedDocuments.incrementAndGet();
+                    log.warn("Failed to warm document {}", metadata.getDocumentId(), e);
+                }
+            }, executor));
+        }
+        executor.shutdown();
+
+        try {
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).get(timeoutSeconds, TimeUnit.SECONDS);
+            log.info("Warmed caches with {} documents ({} chunks) in {} ms",
+                    hottest.size(), warmedChunks.get(), System.currentTimeMillis() - start);
+        } catch (TimeoutException e) {
+            log.warn("Cache warm-up did not finish within {} s, continuing in background", timeoutSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Cache warm-up failed", e);
+        }
+    }
+
+    /**
+     * The first embedding loads the ONNX model and the first search reads the
+     * index from disk, both of which the first user query would otherwise
+     * wait for. The results are discarded.
+     */
+    private void warmQueryPath() {
+        try {
+            float[] embedding = embeddingService.generateEmbedding(WARMUP_QUERY);
+            textChunkRepository.findSimilarChunkRefs(embedding, 1);
+            queryPathWarmed = true;
+        } catch (Exception e) {
+            log.warn("Failed to warm the query path", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        ExecutorService current = executor;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", current != null && !current.isTerminated());
+        stats.put("queryPathWarmed", queryPathWarmed);
+        stats.put("warmedDocuments", warmedDocuments.get());
+        stats.put("warmedChunks", warmedChunks.get());
+        stats.put("failedDocuments", failedDocuments.get());
+        return stats;
+    }
+}
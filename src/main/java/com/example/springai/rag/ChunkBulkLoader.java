@@ -0,0 +1,156 @@
+package com.example.springai.rag;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bulk persistence path for chunks: streams rows, embeddings included, into
+ * {@code text_chunks} with {@code COPY ... FROM STDIN (FORMAT binary)}.
+ *
+ * Ids are taken from {@code text_chunks_seq} up front, in the same blocks of
+ * 50 that Hibernate's pooled optimizer uses, so they never collide with ids
+ * assigned by {@code saveAll} and callers can reference them right away. The
+ * copy runs on the connection of the surrounding Spring transaction and
+ * commits or rolls back with it, like {@code saveAll}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChunkBulkLoader {
+
+    private static final String COPY_SQL = "COPY text_chunks "
+            + "(id, content, embedding, document_id, chunk_index, content_hash, first_version, last_version) "
+            + "FROM STDIN (FORMAT binary)";
+
+    // Must match the allocationSize of TextChunk's sequence generator
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int FLOAT8_OID = 701;
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void load(List<TextChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        assignIds(chunks);
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            PGCopyOutputStream copy = new PGCopyOutputStream(
+                    connection.unwrap(PGConnection.class), COPY_SQL, COPY_BUFFER_SIZE);
+            try {
+                DataOutputStream out = new DataOutputStream(copy);
+                out.write(SIGNATURE);
+                out.writeInt(0); // flags
+                out.writeInt(0); // header extension length
+                for (TextChunk chunk : chunks) {
+                    writeRow(out, chunk);
+                }
+                out.writeShort(-1);
+                out.flush();
+                copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        } catch (SQLException | IOException e) {
+            throw new DataAccessResourceFailureException("Bulk load of " + chunks.size() + " chunks failed", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        log.debug("Bulk loaded {} chunks", chunks.size());
+    }
+
+    private void assignIds(List<TextChunk> chunks) {
+        int assigned = 0;
+        while (assigned < chunks.size()) {
+            int blocks = (chunks.size() - assigned + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+            List<Long> highValues = jdbcTemplate.queryForList(
+                    "SELECT nextval('text_chunks_seq') FROM generate_series(1, ?)", Long.class, blocks);
+            for (Long high : highValues) {
+                // A fresh sequence starts at 1, which does not cover a whole block
+                if (high < ID_BLOCK_SIZE) {
+                    continue;
+                }
+                for (long id = high - ID_BLOCK_SIZE + 1; id <= high && assigned < chunks.size(); id++) {
+                    chunks.get(assigned++).setId(id);
+                }
+            }
+        }
+    }
+
+    private void writeRow(DataOutputStream out, TextChunk chunk) throws IOException {
+        out.writeShort(8);
+
+        out.writeInt(8);
+        out.writeLong(chunk.getId());
+
+        writeText(out, chunk.getContent());
+
+        float[] embedding = chunk.getEmbedding();
+        if (embedding == null) {
+            out.writeInt(-1);
+        } else {
+            // One-dimensional float8 array without nulls
+            out.writeInt(20 + embedding.length * 12);
+            out.writeInt(1);
+            out.writeInt(0);
+            out.writeInt(FLOAT8_OID);
+            out.writeInt(embedding.length);
+            out.writeInt(1);
+            for (float value : embedding) {
+                out.writeInt(8);
+                out.writeDouble(value);
+            }
+        }
+
+        writeText(out, chunk.getDocumentId());
+
+        writeInteger(out, chunk.getChunkIndex());
+        writeText(out, chunk.getContentHash());
+        writeInteger(out, chunk.getFirstVersion());
+        writeInteger(out, chunk.getLastVersion());
+    }
+
+    private void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(4);
+            out.writeInt(value);
+        }
+    }
+
+    private void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Off-heap store of UTF-8 chunk contents keyed by chunk id.
+ *
+ * Contents are appended to fixed-size slabs used as a ring: when the ring
+ * is full the oldest slab is cleared and reused, evicting every entry it
+ * held. Slabs are direct buffers allocated as the ring first reaches them,
+ * or regions of a memory-mapped spill file when
+ * {@code app.rag.content-store.spill-file} is set, in which case the index
+ * is rebuilt from the file on startup. Only the primitive id-to-location
+ * index lives on the heap.
+ *
+ * Chunk contents never change for a given id, so entries are never updated
+ * in place. Ids are only unique within one database, so the spill file
+ * records the database it was written for and is discarded on startup
+ * against any other, such as a recreated one. Entries that do not fit
+ * their slab, as left by a torn write, are dropped from the restored index.
+ *
+ * Spill file layout: a {@code [int magic][int length][length bytes]} header
+ * naming the database, padded to {@value #FILE_HEADER_BYTES} bytes, then
+ * the slabs. Slab layout: {@code [int magic][int used][long sequence]}
+ * followed by entries of {@code [long chunkId][int length][length bytes]}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChunkContentStore {
+
+    private static final int MAGIC = 0x43484b53;
+    private static final int FILE_MAGIC = 0x43484b46;
+    private static final int FILE_HEADER_BYTES = 4096;
+    private static final int SLAB_HEADER_BYTES = 16;
+    private static final int ENTRY_HEADER_BYTES = 12;
+
+    @Value("${app.rag.content-store.enabled:true}")
+    private boolean enabled;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.rag.content-store.slab-size-mb:4}")
+    private int slabSizeMb;
+
+    @Value("${app.rag.content-store.slab-count:16}")
+    private int slabCount;
+
+    @Value("${app.rag.content-store.spill-file:}")
+    private String spillFile;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongLongHashMap index = new LongLongHashMap(64 * 1024);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ByteBuffer[] slabs;
+    private FileChannel channel;
+    private int slabSize;
+    private int currentSlab;
+    private long sequence;
+    private int allocatedSlabs;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        slabSize = slabSizeMb * 1024 * 1024;
+        slabs = new ByteBuffer[slabCount];
+
+        if (spillFile != null && !spillFile.isBlank()) {
+            mapSpillFile(Paths.get(spillFile), databaseId());
+            restoreIndex();
+        }
+        log.info("Chunk content store ready: up to {} slabs of {} MB, {} entries restored",
+                slabCount, slabSizeMb, index.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (ByteBuffer slab : slabs) {
+                ((MappedByteBuffer) slab).force();
+            }
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public String get(long chunkId) {
+        if (!enabled) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            long location = index.get(chunkId);
+            if (location == LongLongHashMap.NO_VALUE) {
+                misses.increment();
+                return null;
+            }
+            ByteBuffer slab = slabs[slabOf(location)];
+            int offset = offsetOf(location);
+            byte[] bytes = new byte[slab.getInt(offset + 8)];
+            slab.get(offset + ENTRY_HEADER_BYTES, bytes);
+            hits.increment();
+            return new String(bytes, StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean put(long chunkId, String content) {
+        if (!enabled || content == null) {
+            return false;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        int entrySize = ENTRY_HEADER_BYTES + bytes.length;
+        if (entrySize > slabSize - SLAB_HEADER_BYTES) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (index.get(chunkId) != LongLongHashMap.NO_VALUE) {
+                return true;
+            }
+            ByteBuffer slab = slab(currentSlab);
+            int used = slab.getInt(4);
+            if (used + entrySize > slabSize) {
+                currentSlab = (currentSlab + 1) % slabCount;
+                slab = slab(currentSlab);
+                evictSlab(currentSlab);
+                used = SLAB_HEADER_BYTES;
+            }
+
+            slab.putLong(used, chunkId);
+            slab.putInt(used + 8, bytes.length);
+            slab.put(used + ENTRY_HEADER_BYTES, bytes);
+            // Publish the entry only once its bytes are written
+            slab.putInt(4, used + entrySize);
+            index.put(chunkId, locationOf(currentSlab, used));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long chunkId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.remove(chunkId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("capacityBytes", enabled ? (long) slabSize * slabCount : 0L);
+        lock.readLock().lock();
+        try {
+            stats.put("allocatedBytes", (long) slabSize * allocatedSlabs);
+            stats.put("entries", index.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("spillFile", channel != null ? spillFile : null);
+        return stats;
+    }
+
+    // Slab of the ring, allocating direct buffers on first use
+    private ByteBuffer slab(int slab) {
+        if (slabs[slab] == null) {
+            slabs[slab] = ByteBuffer.allocateDirect(slabSize);
+            resetSlab(slabs[slab], ++sequence);
+            allocatedSlabs++;
+        }
+        return slabs[slab];
+    }
+
+    /**
+     * Identifies the database the chunk ids belong to: the cluster's system
+     * identifier and the database's oid, both new after a database is
+     * recreated. Empty if it cannot be read, which never matches a file.
+     */
+    private String databaseId() {
+        try {
+            return jdbcTemplate.queryForObject("SELECT (SELECT system_identifier FROM pg_control_system())::text "
+                    + "|| ':' || (SELECT oid FROM pg_database WHERE datname = current_database())::text",
+                    String.class);
+        } catch (RuntimeException e) {
+            log.warn("Could not identify the database, not restoring the chunk content spill file", e);
+            return "";
+        }
+    }
+
+    private void mapSpillFile(Path path, String databaseId) throws IOException {
+        long fileSize = FILE_HEADER_BYTES + (long) slabSize * slabCount;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_BYTES);
+        byte[] id = databaseId.getBytes(StandardCharsets.UTF_8);
+        if (channel.size() != fileSize || databaseId.isEmpty() || !id(header).equals(databaseId)) {
+            // New file, layout changed or another database: start cold
+            log.info("Resetting chunk content spill file {}", path);
+            channel.truncate(0);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_BYTES);
+            header.putInt(0, FILE_MAGIC);
+            header.putInt(4, id.length);
+            header.put(8, id);
+            header.force();
+        }
+        for (int i = 0; i < slabCount; i++) {
+            slabs[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    FILE_HEADER_BYTES + (long) i * slabSize, slabSize);
+        }
+        allocatedSlabs = slabCount;
+    }
+
+    private static String id(ByteBuffer header) {
+        int length = header.getInt(4);
+        if (header.getInt(0) != FILE_MAGIC || length <= 0 || length > FILE_HEADER_BYTES - 8) {
+            return "";
+        }
+        byte[] id = new byte[length];
+        header.get(8, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private void restoreIndex() {
+        int[] order = IntStream.range(0, slabCount)
+                .filter(i -> isValidSlab(slabs[i]))
+                .boxed()
+                .sorted(Comparator.comparingLong(i -> slabs[i].getLong(8)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        for (int i = 0; i < slabCount; i++) {
+            if (!isValidSlab(slabs[i])) {
+                resetSlab(slabs[i], 0);
+            }
+        }
+        for (int slab : order) {
+            ByteBuffer buffer = slabs[slab];
+            int used = buffer.getInt(4);
+            int offset = SLAB_HEADER_BYTES;
+            while (offset < used) {
+                int length = offset + ENTRY_HEADER_BYTES <= used ? buffer.getInt(offset + 8) : -1;
+                if (length < 0 || length > used - offset - ENTRY_HEADER_BYTES) {
+                    // Torn or corrupt entry: keep what precedes it
+                    log.warn("Discarding corrupt entries of chunk content slab {} from offset {}", slab, offset);
+                    buffer.putInt(4, offset);
+                    break;
+                }
+                index.put(buffer.getLong(offset), locationOf(slab, offset));
+                offset += ENTRY_HEADER_BYTES + length;
+            }
+        }
+
+        if (order.length > 0) {
+            currentSlab = order[order.length - 1];
+            sequence = slabs[currentSlab].getLong(8);
+        } else {
+            currentSlab = 0;
+            resetSlab(slabs[0], ++sequence);
+        }
+    }
+
+    private boolean isValidSlab(ByteBuffer slab) {
+        int used = slab.getInt(4);
+        return slab.getInt(0) == MAGIC && used >= SLAB_HEADER_BYTES && used <= slabSize
+                && slab.getLong(8) > 0;
+    }
+
+    private void evictSlab(int slab) {
+        ByteBuffer buffer = slabs[slab];
+        if (buffer.getLong(8) > 0) {
+            int used = buffer.getInt(4);
+            int offset = SLAB_HEADER_BYTES;
+            while (offset < used) {
+                long chunkId = buffer.getLong(offset);
+                if (index.get(chunkId) == locationOf(slab, offset)) {
+                    index.remove(chunkId);
+                    evictions.increment();
+                }
+                offset += ENTRY_HEADER_BYTES + buffer.getInt(offset + 8);
+            }
+        }
+        resetSlab(buffer, ++sequence);
+    }
+
+    private void resetSlab(ByteBuffer slab, long slabSequence) {
+        slab.putInt(0, MAGIC);
+        slab.putInt(4, SLAB_HEADER_BYTES);
+        slab.putLong(8, slabSequence);
+    }
+
+    private static long locationOf(int slab, int offset) {
+        return ((long) slab << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int slabOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+}
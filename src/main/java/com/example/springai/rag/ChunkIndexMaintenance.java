@@ -0,0 +1,177 @@
+package com.example.springai.rag;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the vector index of each {@code text_chunks} partition sized to the
+ * partition. An ivfflat index clusters the rows it was built over into
+ * {@code lists} lists; as a partition grows or shrinks the clusters go
+ * stale and the list count no longer fits. Partitions whose ideal list
+ * count has drifted from the built one by more than the rebuild threshold
+ * get the new count and are reindexed concurrently, several partitions at a
+ * time, while queries keep using the old index.
+ *
+ * Rebuilds run on the configured schedule only, since each one reindexes
+ * partitions of the whole corpus. Only one node rebuilds at a time, guarded
+ * by a Postgres advisory lock.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChunkIndexMaintenance {
+
+    private static final String PARTITION_INDEXES_SQL = "SELECT p.relname AS partition, i.relname AS index_name, "
+            + "GREATEST(p.reltuples, 0)::bigint AS row_estimate, "
+            + "COALESCE((SELECT option_value FROM pg_options_to_table(i.reloptions) "
+            + "WHERE option_name = 'lists'), '100')::int AS lists "
+            + "FROM pg_inherits h "
+            + "JOIN pg_class p ON p.oid = h.inhrelid "
+            + "JOIN pg_index x ON x.indrelid = p.oid "
+            + "JOIN pg_class i ON i.oid = x.indexrelid "
+            + "JOIN pg_am a ON a.oid = i.relam "
+            + "WHERE h.inhparent = 'text_chunks'::regclass AND a.amname = 'ivfflat' "
+            + "ORDER BY p.relname";
+
+    private static final String LOCK_KEY = "hashtext('chunk-index-maintenance')";
+    private static final int MIN_LISTS = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.rag.chunk-index.enabled:true}")
+    private boolean enabled;
+
+    // Partitions reindexed at the same time
+    @Value("${app.rag.chunk-index.parallelism:2}")
+    private int parallelism;
+
+    // Rebuild when the ideal list count is this many times above or below
+    // the built one
+    @Value("${app.rag.chunk-index.rebuild-threshold:2.0}")
+    private double rebuildThreshold;
+
+    @Scheduled(cron = "${app.rag.chunk-index.rebuild-cron:0 30 3 * * *}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the partition indexes whose list count has drifted. Returns
+     * one entry per partition.
+     */
+    public List<Map<String, Object>> rebuild() {
+        return jdbcTemplate.execute((ConnectionCallback<List<Map<String, Object>>>) connection -> {
+            try (Statement statement = connection.createStatement();
+                    ResultSet rs = statement.executeQuery("SELECT pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+                rs.next();
+                if (!rs.getBoolean(1)) {
+                    throw new IllegalStateException("Chunk index maintenance is running on another node");
+                }
+            }
+            try {
+                return rebuildPartitions();
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+        });
+    }
+
+    public List<Map<String, Object>> getPartitions() {
+        return jdbcTemplate.query(PARTITION_INDEXES_SQL, (rs, rowNum) -> {
+            long rows = rs.getLong("row_estimate");
+            Map<String, Object> partition = new LinkedHashMap<>();
+            partition.put("partition", rs.getString("partition"));
+            partition.put("index", rs.getString("index_name"));
+            partition.put("rowEstimate", rows);
+            partition.put("lists", rs.getInt("lists"));
+            partition.put("idealLists", idealLists(rows));
+            return partition;
+        });
+    }
+
+    private List<Map<String, Object>> rebuildPartitions() {
+        List<Map<String, Object>> partitions = getPartitions();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<?>> rebuilds = new ArrayList<>();
+            for (Map<String, Object> partition : partitions) {
+                int lists = (Integer) partition.get("lists");
+                int idealLists = (Integer) partition.get("idealLists");
+                long rows = (Long) partition.get("rowEstimate");
+                boolean drifted = idealLists >= lists * rebuildThreshold || lists >= idealLists * rebuildThreshold;
+                // Partitions never analyzed report no rows
+                if (rows == 0 || !drifted) {
+                    partition.put("rebuilt", false);
+                    continue;
+                }
+                rebuilds.add(executor.submit(() -> rebuildIndex(partition, idealLists)));
+            }
+            for (Future<?> rebuild : rebuilds) {
+                try {
+                    rebuild.get();
+                } catch (ExecutionException e) {
+                    // Recorded on the partition's entry
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return partitions;
+    }
+
+    private void rebuildIndex(Map<String, Object> partition, int lists) {
+        String index = quote((String) partition.get("index"));
+        long start = System.currentTimeMillis();
+        try {
+            // The new list count takes effect with the rebuild; REINDEX
+            // CONCURRENTLY cannot run in a transaction and JdbcTemplate
+            // statements here run in autocommit
+            jdbcTemplate.execute("ALTER INDEX " + index + " SET (lists = " + lists + ")");
+            jdbcTemplate.execute("REINDEX INDEX CONCURRENTLY " + index);
+            partition.put("lists", lists);
+            partition.put("rebuilt", true);
+            partition.put("millis", System.currentTimeMillis() - start);
+            log.info("Rebuilt vector index of {} with {} lists in {} ms",
+                    partition.get("partition"), lists, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            partition.put("rebuilt", false);
+            partition.put("error", e.getMessage());
+            log.warn("Rebuilding the vector index of {} failed", partition.get("partition"), e);
+            throw e;
+        }
+    }
+
+    // pgvector's guidance: rows / 1000 up to a million rows, sqrt(rows) above
+    private static int idealLists(long rows) {
+        long lists = rows <= 1_000_000 ? rows / 1000 : (long) Math.sqrt(rows);
+        return (int) Math.max(MIN_LISTS, lists);
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.springai.rag;
+
+/**
+ * Id-only projection of a retrieved chunk. Retrieval queries return these
+ * so that contents can be served from {@link ChunkContentStore}.
+ */
+public interface ChunkReference {
+
+    Long getId();
+
+    String getDocumentId();
+}
@@ -0,0 +1,13 @@
+package com.example.springai.rag;
+
+/**
+ * How a document is split into chunks: cut preference, character limit,
+ * overlap carried between consecutive chunks, and the embedding model's
+ * token limit (0 for none).
+ */
+public record ChunkingOptions(
+        DocumentCollection.ChunkingStrategy strategy,
+        int chunkSize,
+        int chunkOverlap,
+        int maxTokens) {
+}
@@ -0,0 +1,140 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Comma-separated values with a header row. Each record becomes its own
+ * chunk, written as one {@code column: value} line per non-empty field so the
+ * embedding sees the column names; records above the chunk limits are split
+ * like any other text. Quoted fields may contain commas, quotes and line
+ * breaks.
+ */
+@Component
+public class CsvTextExtractor implements TextExtractor {
+
+    // Guards against an unterminated quote swallowing the rest of the file
+    private static final int MAX_RECORD_CHARS = 1024 * 1024;
+
+    @Override
+    public Set<String> getExtensions() {
+        return Set.of("csv");
+    }
+
+    @Override
+    public void extract(InputStream in, TextChunker chunker) throws IOException {
+        CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> header = reader.readRecord();
+        if (header == null) {
+            return;
+        }
+        if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+            header.set(0, header.get(0).substring(1));
+        }
+
+        StringBuilder row = new StringBuilder();
+        List<String> record;
+        while ((record = reader.readRecord()) != null) {
+            row.setLength(0);
+            for (int i = 0; i < record.size(); i++) {
+                String value = record.get(i).strip();
+                if (value.isEmpty()) {
+                    continue;
+                }
+                if (row.length() > 0) {
+                    row.append('\n');
+                }
+                String column = i < header.size() ? header.get(i).strip() : "";
+                if (!column.isEmpty()) {
+                    row.append(column).append(": ");
+                }
+                row.append(value);
+            }
+            if (row.length() > 0) {
+                chunker.append(row);
+                chunker.finish();
+            }
+        }
+    }
+
+    /**
+     * RFC 4180 record reader over a reused buffer.
+     */
+    private static final class CsvReader {
+
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder field = new StringBuilder();
+        private int position;
+        private int limit;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Next record, or null at the end of the input.
+         */
+        List<String> readRecord() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> record = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+            int length = 0;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        record.add(field.toString());
+                        return record;
+                    }
+                    if (c == '"') {
+                        int next = read();
+                        if (next != '"') {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    }
+                    field.append((char) c);
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    record.add(field.toString());
+                    return record;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                if (++length > MAX_RECORD_CHARS) {
+                    throw new IllegalArgumentException("CSV record exceeds " + MAX_RECORD_CHARS + " characters");
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+    }
+}
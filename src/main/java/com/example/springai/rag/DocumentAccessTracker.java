@@ -0,0 +1,102 @@
+package com.example.springai.rag;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Records document reads without writing to the database per request.
+ * Reads only bump a striped {@link LongAdder}; a scheduled flush applies the
+ * accumulated counts to {@code document_metadata.access_count} and
+ * {@code last_accessed} in JDBC batches. Each batch commits as one
+ * transaction, so when a batch fails none of its rows were applied and
+ * exactly the counts of that batch and the ones after it are kept for the
+ * next flush.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocumentAccessTracker {
+
+    private static final String FLUSH_SQL = "UPDATE document_metadata "
+            + "SET access_count = COALESCE(access_count, 0) + ?, "
+            + "last_accessed = GREATEST(last_accessed, ?) "
+            + "WHERE document_id = ?";
+
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, AccessCounter> counters = new ConcurrentHashMap<>();
+
+    public void recordAccess(String documentId) {
+        if (documentId == null) {
+            return;
+        }
+        AccessCounter counter = counters.get(documentId);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(documentId, k -> new AccessCounter());
+        }
+        counter.count.increment();
+        counter.lastAccessed = System.currentTimeMillis();
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${app.rag.access-tracking.flush-interval-ms:30000}")
+    public void flush() {
+        List<Object[]> updates = new ArrayList<>();
+        List<AccessCounter> flushed = new ArrayList<>();
+        List<Long> flushedCounts = new ArrayList<>();
+
+        for (Map.Entry<String, AccessCounter> entry : counters.entrySet()) {
+            AccessCounter counter = entry.getValue();
+            long count = counter.count.sumThenReset();
+            if (count == 0) {
+                // Idle document; an increment racing with this removal is lost,
+                // which is acceptable for hotness tracking
+                counters.remove(entry.getKey(), counter);
+                continue;
+            }
+            updates.add(new Object[]{count, new Timestamp(counter.lastAccessed), entry.getKey()});
+            flushed.add(counter);
+            flushedCounts.add(count);
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < updates.size(); i += FLUSH_BATCH_SIZE) {
+            List<Object[]> batch = updates.subList(i, Math.min(i + FLUSH_BATCH_SIZE, updates.size()));
+            try {
+                // In autocommit the driver may apply part of a failed batch
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batch));
+            } catch (Exception e) {
+                log.error("Failed to flush document access counts, retrying on next flush", e);
+                for (int j = i; j < updates.size(); j++) {
+                    flushed.get(j).count.add(flushedCounts.get(j));
+                }
+                return;
+            }
+        }
+        log.debug("Flushed access counts for {} documents", updates.size());
+    }
+
+    private static class AccessCounter {
+
+        private final LongAdder count = new LongAdder();
+        private volatile long lastAccessed;
+    }
+}
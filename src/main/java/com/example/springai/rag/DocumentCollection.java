@@ -73,6 +73,20 @@ public class DocumentCollection {
     @Column(columnDefinition = "jsonb")
     private String metadata;
 
+    // Chunking overrides for documents in this collection, null uses the defaults
+    @Column(name = "chunking_strategy")
+    @Enumerated(EnumType.STRING)
+    private ChunkingStrategy chunkingStrategy;
+
+    @Column(name = "chunk_size")
+    private Integer chunkSize;
+
+    @Column(name = "chunk_overlap")
+    private Integer chunkOverlap;
+
+    @Column(name = "chunk_max_tokens")
+    private Integer chunkMaxTokens;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -83,4 +97,11 @@ public class DocumentCollection {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
+
+    public enum ChunkingStrategy {
+        // Cut at the last paragraph break, falling back to word breaks
+        PARAGRAPH,
+        // Fill chunks up to the limits, cutting at word breaks
+        FIXED
+    }
 }
@@ -0,0 +1,59 @@
+package com.example.springai.rag;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Per-document mutual exclusion for changes that must be serialized, such as
+ * allocating the next version number. Threads of this node queue on a striped
+ * local lock first, so waiters do not hold database connections; across nodes
+ * a transaction-scoped Postgres advisory lock keyed by the document id is
+ * taken. Both are held until the action's transaction has committed.
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentLocks {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.rag.versioning.lock-stripes:64}")
+    private int stripeCount;
+
+    private ReentrantLock[] stripes;
+
+    @PostConstruct
+    public void init() {
+        stripes = new ReentrantLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs the action in a transaction while holding the document's lock.
+     * Callers must not already be in a transaction, or the advisory lock
+     * would outlive the local one.
+     */
+    public <T> T withDocumentLock(String documentId, Supplier<T> action) {
+        ReentrantLock stripe = stripes[Math.floorMod(documentId.hashCode(), stripes.length)];
+        stripe.lock();
+        try {
+            return transactionTemplate.execute(status -> {
+                jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext('document'), hashtext(?))",
+                        rs -> { }, documentId);
+                return action.get();
+            });
+        } finally {
+            stripe.unlock();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.springai.rag;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -13,4 +16,9 @@ public interface DocumentMetadataRepository extends JpaRepository<DocumentMetada
     Optional<DocumentMetadata> findByFileName(String fileName);
 
     List<DocumentMetadata> findAllByOrderByUploadTimestampDesc();
+
+    List<DocumentMetadata> findByAccessCountGreaterThanOrderByAccessCountDesc(Long accessCount, Pageable pageable);
+
+    @Query("SELECT m.documentId FROM DocumentMetadata m WHERE m.collectionId = :collectionId")
+    List<String> findDocumentIdsByCollectionId(@Param("collectionId") String collectionId);
 }
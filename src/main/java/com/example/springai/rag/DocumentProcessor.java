@@ -1,78 +1,250 @@
 package com.example.springai.rag;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class DocumentProcessor {
 
-    public List<TextChunk> processDocument(MultipartFile file) throws IOException {
-        String content = extractText(file);
-        return splitIntoChunks(content);
-    }
+    private final List<TextExtractor> textExtractors;
 
-    private String extractText(MultipartFile file) throws IOException {
-        String fileName = file.getOriginalFilename().toLowerCase();
+    @Value("${app.rag.chunk-strategy:PARAGRAPH}")
+    private DocumentCollection.ChunkingStrategy chunkStrategy;
 
-        if (fileName.endsWith(".pdf")) {
-            try (PDDocument document = PDDocument.load(file.getInputStream())) {
-                PDFTextStripper stripper = new PDFTextStripper();
-                return stripper.getText(document);
-            }
-        } else if (fileName.endsWith(".docx")) {
-            try (XWPFDocument document = new XWPFDocument(file.getInputStream())) {
-                XWPFWordExtractor extractor = new XWPFWordExtractor(document);
-                return extractor.getText();
+    @Value("${app.rag.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.rag.chunk-overlap:100}")
+    private int chunkOverlap;
+
+    // Sequence length of the embedding model, MiniLM truncates at 256 word pieces
+    @Value("${app.rag.chunk-max-tokens:256}")
+    private int chunkMaxTokens;
+
+    // Pages extracted per PDFTextStripper pass
+    @Value("${app.rag.pdf.page-window:10}")
+    private int pdfPageWindow;
+
+    // Parsed PDF objects above this size spill to a scratch file
+    @Value("${app.rag.pdf.max-main-memory-mb:32}")
+    private long pdfMaxMainMemoryMb;
+
+    // PDFs with at least this many pages are extracted in parallel
+    @Value("${app.rag.pdf.parallel-threshold-pages:200}")
+    private int pdfParallelThresholdPages;
+
+    @Value("${app.rag.pdf.parallel-range-pages:25}")
+    private int pdfParallelRangePages;
+
+    // 0 uses one worker per available processor
+    @Value("${app.rag.pdf.parallelism:0}")
+    private int pdfParallelism;
+
+    @Value("${app.rag.ingestion.shutdown-grace-seconds:30}")
+    private long shutdownGraceSeconds;
+
+    private ThreadPoolExecutor pdfExecutor;
+    private final Map<String, TextExtractor> extractorsByExtension = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (TextExtractor extractor : textExtractors) {
+            extractor.getExtensions().forEach(extension -> extractorsByExtension.put(extension, extractor));
+        }
+        if (pdfParallelism <= 0) {
+            pdfParallelism = Runtime.getRuntime().availableProcessors();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        pdfExecutor = new ThreadPoolExecutor(pdfParallelism, pdfParallelism, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-extract-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Lets page ranges in progress finish within the shutdown grace period,
+     * so documents being ingested fail cleanly rather than mid-extraction.
+     */
+    @PreDestroy
+    public void shutdown() {
+        pdfExecutor.shutdown();
+        try {
+            if (!pdfExecutor.awaitTermination(shutdownGraceSeconds, TimeUnit.SECONDS)) {
+                pdfExecutor.shutdownNow();
             }
-        } else if (fileName.endsWith(".txt")) {
-            return new String(file.getBytes());
-        } else {
-            throw new IllegalArgumentException("Unsupported file format");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pdfExecutor.shutdownNow();
         }
     }
 
-    private List<TextChunk> splitIntoChunks(String content) {
+    public Map<String, Object> getPdfStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", pdfParallelism);
+        stats.put("active", pdfExecutor.getActiveCount());
+        stats.put("queued", pdfExecutor.getQueue().size());
+        stats.put("completed", pdfExecutor.getCompletedTaskCount());
+        return stats;
+    }
+
+    public List<TextChunk> processDocument(MultipartFile file, ChunkingOptions options) throws IOException {
         List<TextChunk> chunks = new ArrayList<>();
-        String[] paragraphs = content.split("\\n\\n+");
+        processDocument(DocumentSource.of(file), options, chunks::add);
+        return chunks;
+    }
+
+    /**
+     * Extracts and chunks the document, handing each chunk to the sink as
+     * soon as it is complete.
+     */
+    public void processDocument(DocumentSource source, ChunkingOptions options,
+            Consumer<TextChunk> sink) throws IOException {
+        TextChunker chunker = new TextChunker(sink, options);
+        extractText(source, chunker);
+        chunker.finish();
+    }
+
+    /**
+     * Chunking options for documents of the given collection: its overrides
+     * on top of the configured defaults. A null collection gets the defaults.
+     */
+    public ChunkingOptions chunkingOptions(DocumentCollection collection) {
+        if (collection == null) {
+            return new ChunkingOptions(chunkStrategy, chunkSize, chunkOverlap, chunkMaxTokens);
+        }
+        return new ChunkingOptions(
+                collection.getChunkingStrategy() != null ? collection.getChunkingStrategy() : chunkStrategy,
+                collection.getChunkSize() != null ? collection.getChunkSize() : chunkSize,
+                collection.getChunkOverlap() != null ? collection.getChunkOverlap() : chunkOverlap,
+                collection.getChunkMaxTokens() != null ? collection.getChunkMaxTokens() : chunkMaxTokens);
+    }
 
-        StringBuilder currentChunk = new StringBuilder();
-        int chunkSize = 0;
-        int maxChunkSize = 1000; // Maximum characters per chunk
+    private void extractText(DocumentSource source, TextChunker chunker) throws IOException {
+        String fileName = source.getFilename().toLowerCase();
 
-        for (String paragraph : paragraphs) {
-            paragraph = paragraph.trim();
-            if (paragraph.isEmpty()) {
-                continue;
+        if (fileName.endsWith(".pdf")) {
+            if (source.getPath() != null) {
+                extractPdf(source.getPath().toFile(), chunker);
+                return;
+            }
+            // Spool to disk so PDFBox can read it with random access and
+            // parallel workers can open their own handles
+            Path spooled = Files.createTempFile("rag-upload-", ".pdf");
+            try {
+                try (InputStream in = source.openStream()) {
+                    Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+                }
+                extractPdf(spooled.toFile(), chunker);
+            } finally {
+                Files.deleteIfExists(spooled);
+            }
+        } else {
+            TextExtractor extractor = extractorsByExtension.get(
+                    fileName.substring(fileName.lastIndexOf('.') + 1));
+            if (extractor == null) {
+                throw new IllegalArgumentException("Unsupported file format");
+            }
+            try (InputStream in = source.openStream()) {
+                extractor.extract(in, chunker);
             }
+        }
+    }
 
-            if (chunkSize + paragraph.length() > maxChunkSize && chunkSize > 0) {
-                // Store current chunk and start a new one
-                chunks.add(new TextChunk(currentChunk.toString()));
-                currentChunk = new StringBuilder();
-                chunkSize = 0;
+    private void extractPdf(File file, TextChunker chunker) throws IOException {
+        int pageCount;
+        try (PDDocument document = PDDocument.load(file, pdfMemoryUsage())) {
+            pageCount = document.getNumberOfPages();
+            if (pageCount < pdfParallelThresholdPages || pdfParallelism < 2) {
+                extractPdfPages(document, 1, pageCount, chunker::append);
+                return;
             }
+        }
+        extractPdfParallel(file, pageCount, chunker);
+    }
 
-            if (currentChunk.length() > 0) {
-                currentChunk.append("\n\n");
+    /**
+     * Extracts page ranges concurrently, each on its own document handle,
+     * and feeds the texts to the chunker in page order. At most two ranges
+     * per worker are in flight, which bounds the text held in memory.
+     */
+    private void extractPdfParallel(File file, int pageCount, TextChunker chunker) throws IOException {
+        log.info("Extracting {} pages of {} in parallel with {} workers",
+                pageCount, file.getName(), pdfParallelism);
+        Deque<Future<String>> inFlight = new ArrayDeque<>();
+        int nextPage = 1;
+        try {
+            while (nextPage <= pageCount || !inFlight.isEmpty()) {
+                while (nextPage <= pageCount && inFlight.size() < pdfParallelism * 2) {
+                    int firstPage = nextPage;
+                    int lastPage = Math.min(firstPage + pdfParallelRangePages - 1, pageCount);
+                    inFlight.add(pdfExecutor.submit(() -> extractPdfRange(file, firstPage, lastPage)));
+                    nextPage = lastPage + 1;
+                }
+                chunker.append(inFlight.poll().get());
             }
-            currentChunk.append(paragraph);
-            chunkSize += paragraph.length();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting PDF", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to extract PDF page range", e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private String extractPdfRange(File file, int firstPage, int lastPage) throws IOException {
+        try (PDDocument document = PDDocument.load(file, pdfMemoryUsage())) {
+            StringBuilder text = new StringBuilder();
+            extractPdfPages(document, firstPage, lastPage, text::append);
+            return text.toString();
         }
+    }
 
-        if (currentChunk.length() > 0) {
-            chunks.add(new TextChunk(currentChunk.toString()));
+    private void extractPdfPages(PDDocument document, int firstPage, int lastPage,
+            Consumer<String> output) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        for (int start = firstPage; start <= lastPage; start += pdfPageWindow) {
+            stripper.setStartPage(start);
+            stripper.setEndPage(Math.min(start + pdfPageWindow - 1, lastPage));
+            output.accept(stripper.getText(document));
         }
+    }
 
-        return chunks;
+    private MemoryUsageSetting pdfMemoryUsage() {
+        return MemoryUsageSetting.setupMixed(pdfMaxMainMemoryMb * 1024 * 1024);
     }
 }
@@ -0,0 +1,202 @@
+package com.example.springai.rag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.springai.search.MeilisearchService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Removes the chunks of deleted documents in the background. Deleting a
+ * document only writes a tombstone, which retrieval filters on; this purger
+ * then deletes the chunks in small batches, each in its own short
+ * transaction, drops them from the local content store and the keyword
+ * index, and removes the tombstone once none are left. Each batch stays in
+ * the document's partition of {@code text_chunks}; once enough rows have
+ * been deleted from a partition, that partition alone is vacuumed, so the
+ * dead tuples do not linger in it and its vector index.
+ *
+ * Purgers on several nodes may work on the same tombstone; the batches
+ * simply delete whatever is left. Content stores of other nodes keep the
+ * purged entries until their slabs are reused, which is harmless since
+ * retrieval no longer returns those ids.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocumentPurger {
+
+    // Hot chunks first, then those of documents deleted while archived
+    private static final String[] CHUNK_TABLES = {"text_chunks", "text_chunks_archive"};
+
+    // An ingestion still running for the document may have added chunks since
+    private static final String DELETE_TOMBSTONE_SQL = "DELETE FROM document_tombstones t "
+            + "WHERE t.document_id = ? AND NOT EXISTS "
+            + "(SELECT 1 FROM text_chunks c WHERE c.document_id = t.document_id) AND NOT EXISTS "
+            + "(SELECT 1 FROM text_chunks_archive a WHERE a.document_id = t.document_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DocumentTombstoneRepository tombstoneRepository;
+    private final ChunkContentStore contentStore;
+    private final MeilisearchService meilisearchService;
+
+    @Value("${app.rag.purge.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rag.purge.batch-size:1000}")
+    private int batchSize;
+
+    // Bounds the work of one run, so a huge document does not hog the scheduler
+    @Value("${app.rag.purge.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.rag.purge.documents-per-run:20}")
+    private int documentsPerRun;
+
+    // Pending tombstones of ingestions that have not finished in this time
+    // are purged like deleted documents
+    @Value("${app.rag.purge.pending-timeout-hours:24}")
+    private int pendingTimeoutHours;
+
+    // Chunks deleted from a partition on this node before it is vacuumed; 0
+    // disables vacuuming
+    @Value("${app.rag.purge.vacuum-threshold:100000}")
+    private long vacuumThreshold;
+
+    // By partition, or by table for the unpartitioned archive
+    private final Map<String, Long> deletedSinceVacuum = new ConcurrentHashMap<>();
+    private final LongAdder purgedChunks = new LongAdder();
+    private final LongAdder purgedDocuments = new LongAdder();
+    private final LongAdder vacuums = new LongAdder();
+
+    @Scheduled(fixedDelayString = "${app.rag.purge.interval-ms:10000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        int batches = 0;
+        for (DocumentTombstone tombstone : tombstoneRepository.findOldest(documentsPerRun, pendingTimeoutHours)) {
+            String documentId = tombstone.getDocumentId();
+            boolean done = true;
+            for (String table : CHUNK_TABLES) {
+                done = false;
+                while (!done && batches < maxBatchesPerRun) {
+                    List<Long> ids = deleteBatch(table, documentId);
+                    batches++;
+                    evict(ids);
+                    done = ids.size() < batchSize;
+                }
+                if (!done) {
+                    break;
+                }
+            }
+            if (!done) {
+                break;
+            }
+            finish(documentId);
+        }
+        vacuumIfNeeded();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pendingDocuments", tombstoneRepository.count());
+        stats.put("purgedDocuments", purgedDocuments.sum());
+        stats.put("purgedChunks", purgedChunks.sum());
+        stats.put("deletedSinceVacuum", new TreeMap<>(deletedSinceVacuum));
+        stats.put("vacuums", vacuums.sum());
+        return stats;
+    }
+
+    private List<Long> deleteBatch(String table, String documentId) {
+        // The document_id condition on the outer delete prunes it to one partition
+        String sql = "DELETE FROM " + table + " WHERE document_id = ? AND id IN "
+                + "(SELECT id FROM " + table + " WHERE document_id = ? LIMIT ?) "
+                + "RETURNING id, tableoid::regclass::text AS partition";
+        Map<String, Long> deletedByPartition = new HashMap<>();
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Long> deleted = new ArrayList<>();
+            jdbcTemplate.query(sql, rs -> {
+                deleted.add(rs.getLong("id"));
+                deletedByPartition.merge(rs.getString("partition"), 1L, Long::sum);
+            }, documentId, documentId, batchSize);
+            if (!deleted.isEmpty()) {
+                tombstoneRepository.addPurgedChunks(documentId, deleted.size());
+            }
+            return deleted;
+        });
+        purgedChunks.add(ids.size());
+        deletedByPartition.forEach((partition, count) -> deletedSinceVacuum.merge(partition, count, Long::sum));
+        return ids;
+    }
+
+    private void evict(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (Long id : ids) {
+            contentStore.remove(id);
+        }
+        try {
+            meilisearchService.deleteChunks(ids);
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove {} purged chunks from the search index", ids.size(), e);
+        }
+    }
+
+    private void finish(String documentId) {
+        int removed = transactionTemplate.execute(status -> jdbcTemplate.update(
+                DELETE_TOMBSTONE_SQL, documentId));
+        if (removed == 0) {
+            return;
+        }
+        purgedDocuments.increment();
+        try {
+            meilisearchService.deleteDocument(documentId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove purged document {} from the search index", documentId, e);
+        }
+        log.info("Purged deleted document {}", documentId);
+    }
+
+    private void vacuumIfNeeded() {
+        if (vacuumThreshold <= 0) {
+            return;
+        }
+        for (String partition : new ArrayList<>(deletedSinceVacuum.keySet())) {
+            long deleted = deletedSinceVacuum.getOrDefault(partition, 0L);
+            if (deleted < vacuumThreshold) {
+                continue;
+            }
+            deletedSinceVacuum.merge(partition, -deleted, Long::sum);
+            long start = System.currentTimeMillis();
+            try {
+                // Runs outside a transaction, as VACUUM requires. The name
+                // comes from regclass output, which quotes it where needed
+                jdbcTemplate.execute("VACUUM (ANALYZE) " + partition);
+                vacuums.increment();
+                log.info("Vacuumed {} after purging {} chunks in {} ms",
+                        partition, deleted, System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                deletedSinceVacuum.merge(partition, deleted, Long::sum);
+                log.warn("Vacuum of {} failed", partition, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Content of an uploaded document, independent of the HTTP request it came
+ * with, so it can be processed after the request has completed.
+ */
+public interface DocumentSource {
+
+    String getFilename();
+
+    String getContentType();
+
+    long getSize();
+
+    InputStream openStream() throws IOException;
+
+    // Local file holding the content, or null if it only exists as a stream
+    default Path getPath() {
+        return null;
+    }
+
+    static DocumentSource of(MultipartFile file) {
+        return new DocumentSource() {
+            @Override
+            public String getFilename() {
+                return file.getOriginalFilename();
+            }
+
+            @Override
+            public String getContentType() {
+                return file.getContentType();
+            }
+
+            @Override
+            public long getSize() {
+                return file.getSize();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return file.getInputStream();
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.springai.rag;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Marks a deleted document whose chunks have not all been purged yet.
+ * Retrieval skips chunks of tombstoned documents; the row is removed once
+ * the purger has deleted the last of them.
+ *
+ * A pending tombstone hides a document that is still being ingested. It is
+ * removed when the ingestion completes, or turned into a regular tombstone
+ * when it fails, so the chunks already stored are purged.
+ */
+@Data
+@Entity
+@Table(name = "document_tombstones", indexes = {
+    @Index(name = "idx_document_tombstones_deleted_at", columnList = "deleted_at")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentTombstone {
+
+    @Id
+    @Column(name = "document_id")
+    private String documentId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    @Column(name = "purged_chunks", nullable = false)
+    private long purgedChunks;
+
+    @Column(name = "pending", columnDefinition = "boolean not null default false")
+    private boolean pending;
+}
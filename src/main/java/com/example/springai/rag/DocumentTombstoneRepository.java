@@ -0,0 +1,49 @@
+package com.example.springai.rag;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DocumentTombstoneRepository extends JpaRepository<DocumentTombstone, String> {
+
+    /**
+     * Tombstones to purge, oldest first. Pending tombstones belong to running
+     * ingestions and are only included once they are older than the timeout,
+     * when the node running the ingestion is presumed gone.
+     */
+    @Query(value = "SELECT * FROM document_tombstones "
+            + "WHERE NOT pending OR deleted_at < LOCALTIMESTAMP - make_interval(hours => :pendingTimeoutHours) "
+            + "ORDER BY deleted_at LIMIT :limit", nativeQuery = true)
+    List<DocumentTombstone> findOldest(@Param("limit") int limit,
+            @Param("pendingTimeoutHours") int pendingTimeoutHours);
+
+    // Does not touch a document that is already tombstoned
+    @Modifying
+    @Query(value = "INSERT INTO document_tombstones (document_id, deleted_at, purged_chunks, pending) "
+            + "VALUES (:documentId, LOCALTIMESTAMP, 0, true) ON CONFLICT (document_id) DO NOTHING",
+            nativeQuery = true)
+    int hidePending(@Param("documentId") String documentId);
+
+    @Modifying
+    @Query("DELETE FROM DocumentTombstone t WHERE t.documentId = :documentId AND t.pending = true")
+    int revealDocument(@Param("documentId") String documentId);
+
+    // The purger then removes the chunks stored so far
+    @Modifying
+    @Query(value = "UPDATE document_tombstones SET pending = false, deleted_at = LOCALTIMESTAMP "
+            + "WHERE document_id = :documentId AND pending", nativeQuery = true)
+    int discardPending(@Param("documentId") String documentId);
+
+    @Query("SELECT COUNT(t) > 0 FROM DocumentTombstone t WHERE t.documentId = :documentId AND t.pending = false")
+    boolean isDeleted(@Param("documentId") String documentId);
+
+    @Modifying
+    @Query("UPDATE DocumentTombstone t SET t.purgedChunks = t.purgedChunks + :count "
+            + "WHERE t.documentId = :documentId")
+    int addPurgedChunks(@Param("documentId") String documentId, @Param("count") long count);
+}
@@ -14,7 +14,8 @@ import java.time.LocalDateTime;
 public class DocumentVersion {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_versions_seq")
+    @SequenceGenerator(name = "document_versions_seq", sequenceName = "document_versions_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "document_id", nullable = false)
@@ -26,6 +27,8 @@ public class DocumentVersion {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    // Id range of versions stored as a full copy of the chunks; newer
+    // versions share chunks and select them by the chunks' version range
     @Column(name = "chunk_start_id")
     private Long chunkStartId;
 
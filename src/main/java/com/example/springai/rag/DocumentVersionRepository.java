@@ -24,6 +24,17 @@ public interface DocumentVersionRepository extends JpaRepository<DocumentVersion
     @Query("SELECT v FROM DocumentVersion v WHERE v.documentId = ?1 AND v.isActive = true")
     Optional<DocumentVersion> findActiveVersion(String documentId);
 
+    @Modifying
+    @Query("UPDATE DocumentVersion v SET v.isActive = false WHERE v.documentId = :documentId AND v.isActive = true")
+    int deactivateVersions(@Param("documentId") String documentId);
+
+    // Unlike save, leaves a version deleted meanwhile deleted
+    @Modifying
+    @Query("UPDATE DocumentVersion v SET v.status = :status, v.changeDescription = :description "
+            + "WHERE v.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") DocumentVersion.ProcessingStatus status,
+            @Param("description") String description);
+
     @Modifying
     @Query("DELETE FROM DocumentVersion v WHERE v.documentId = :documentId")
     void deleteByDocumentId(@Param("documentId") String documentId);
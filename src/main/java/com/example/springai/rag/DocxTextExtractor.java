@@ -0,0 +1,125 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Word documents. By default the package is read as a zip stream and only
+ * {@code word/document.xml} is parsed, with a StAX cursor that hands run text
+ * to the chunker as it goes; images and other parts are passed over without
+ * being buffered. Paragraphs end with a paragraph break, table cells with a
+ * tab, rows with a line break and tables with a paragraph break. Headers, footers and notes live in other
+ * parts and are not included.
+ *
+ * With {@code app.rag.docx.streaming=false} the document is loaded with
+ * XWPF instead, which holds the whole package in memory.
+ */
+@Component
+public class DocxTextExtractor implements TextExtractor {
+
+    private static final String DOCUMENT_PART = "word/document.xml";
+    private static final String WORDML_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    @Value("${app.rag.docx.streaming:true}")
+    private boolean streaming;
+
+    @Override
+    public Set<String> getExtensions() {
+        return Set.of("docx");
+    }
+
+    @Override
+    public void extract(InputStream in, TextChunker chunker) throws IOException {
+        if (!streaming) {
+            try (XWPFDocument document = new XWPFDocument(in)) {
+                chunker.append(new XWPFWordExtractor(document).getText());
+            }
+            return;
+        }
+
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (DOCUMENT_PART.equals(entry.getName())) {
+                extractDocumentPart(zip, chunker);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Not a Word document: " + DOCUMENT_PART + " is missing");
+    }
+
+    private void extractDocumentPart(InputStream part, TextChunker chunker) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(part);
+            boolean inText = false;
+            int cellDepth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (inText) {
+                        chunker.append(reader.getText());
+                    }
+                } else if (event == XMLStreamConstants.START_ELEMENT && WORDML_NS.equals(reader.getNamespaceURI())) {
+                    String name = reader.getLocalName();
+                    if ("t".equals(name)) {
+                        inText = true;
+                    } else if ("tc".equals(name)) {
+                        cellDepth++;
+                    } else if ("tab".equals(name)) {
+                        chunker.append("\t");
+                    } else if ("br".equals(name) || "cr".equals(name)) {
+                        chunker.append("\n");
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && WORDML_NS.equals(reader.getNamespaceURI())) {
+                    String name = reader.getLocalName();
+                    if ("t".equals(name)) {
+                        inText = false;
+                    } else if ("p".equals(name)) {
+                        chunker.append(cellDepth > 0 ? " " : "\n\n");
+                    } else if ("tc".equals(name)) {
+                        cellDepth--;
+                        chunker.append("\t");
+                    } else if ("tr".equals(name)) {
+                        chunker.append("\n");
+                    } else if ("tbl".equals(name) && cellDepth == 0) {
+                        chunker.append("\n\n");
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Invalid Word document: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Nothing left to read
+                }
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.springai.rag;
 
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -9,29 +10,44 @@ import java.util.HashSet;
 public class FileTypeValidator {
 
     private static final Set<String> SUPPORTED_EXTENSIONS = new HashSet<>(Set.of(
-            "pdf", "docx", "txt", "doc", "rtf", "md", "csv", "json", "xml"
+            "pdf", "docx", "txt", "md", "csv", "json", "xml"
     ));
 
     private static final Set<String> SUPPORTED_MIME_TYPES = new HashSet<>(Set.of(
             "application/pdf",
             "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
             "text/plain",
-            "application/msword",
-            "application/rtf",
             "text/markdown",
             "text/csv",
             "application/json",
-            "application/xml"
+            "application/xml",
+            "text/xml"
     ));
 
+    private static final Map<String, String> MIME_TYPES_BY_EXTENSION = Map.of(
+            "pdf", "application/pdf",
+            "docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "txt", "text/plain",
+            "md", "text/markdown",
+            "csv", "text/csv",
+            "json", "application/json",
+            "xml", "application/xml"
+    );
+
     private static final long MAX_FILE_SIZE = 50 * 1024 * 1024; // 50MB
 
     public void validateFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("File is empty");
         }
+        validate(file.getOriginalFilename(), file.getContentType(), file.getSize(), MAX_FILE_SIZE);
+    }
 
-        String fileName = file.getOriginalFilename();
+    /**
+     * Checks the name, type and size of an upload that does not come as a
+     * multipart file, e.g. a resumable upload announced before its parts.
+     */
+    public void validate(String fileName, String mimeType, long size, long maxSize) {
         if (fileName == null) {
             throw new IllegalArgumentException("Invalid file name");
         }
@@ -41,14 +57,29 @@ public class FileTypeValidator {
             throw new IllegalArgumentException("Unsupported file type: " + extension);
         }
 
-        String mimeType = file.getContentType();
         if (mimeType == null || !SUPPORTED_MIME_TYPES.contains(mimeType)) {
             throw new IllegalArgumentException("Unsupported MIME type: " + mimeType);
         }
 
-        if (file.getSize() > MAX_FILE_SIZE) {
-            throw new IllegalArgumentException("File size exceeds maximum limit of 50MB");
+        if (size <= 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (size > maxSize) {
+            throw new IllegalArgumentException("File size exceeds maximum limit of "
+                    + maxSize / (1024 * 1024) + "MB");
+        }
+    }
+
+    /**
+     * MIME type for a supported file name, for uploads that do not declare
+     * one, such as archive entries. Null for unsupported extensions.
+     */
+    public String mimeTypeFor(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        if (lastDotIndex == -1) {
+            return null;
         }
+        return MIME_TYPES_BY_EXTENSION.get(fileName.substring(lastDotIndex + 1).toLowerCase());
     }
 
     private String getFileExtension(String fileName) {
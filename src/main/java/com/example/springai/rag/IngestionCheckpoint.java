@@ -0,0 +1,38 @@
+package com.example.springai.rag;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * A batch of chunks persisted for a version, written in the same transaction
+ * as the chunks themselves. A resumed ingestion skips the recorded ranges.
+ */
+@Data
+@Entity
+@Table(name = "ingestion_checkpoints", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_ingestion_checkpoints_batch", columnNames = {"version_id", "first_chunk"})
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "version_id", nullable = false)
+    private Long versionId;
+
+    // Ordinal of the first chunk in the batch
+    @Column(name = "first_chunk", nullable = false)
+    private Integer firstChunk;
+
+    @Column(name = "chunk_count", nullable = false)
+    private Integer chunkCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,19 @@
+package com.example.springai.rag;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestionCheckpointRepository extends JpaRepository<IngestionCheckpoint, Long> {
+
+    List<IngestionCheckpoint> findByVersionId(Long versionId);
+
+    @Modifying
+    @Query("DELETE FROM IngestionCheckpoint c WHERE c.versionId = :versionId")
+    void deleteByVersionId(@Param("versionId") Long versionId);
+}
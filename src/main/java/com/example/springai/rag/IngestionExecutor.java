@@ -0,0 +1,188 @@
+package com.example.springai.rag;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs ingestion jobs on this node. The pool is sized from the processors
+ * and the pipeline's embed workers, since jobs beyond that only wait for
+ * embedding, and its queue is bounded. Callers reserve a slot before taking
+ * on work, so a job is only claimed from the queue when it can start.
+ *
+ * The number of slots adapts to the pipeline: when the time to embed and
+ * persist a chunk rises well above the best seen, concurrent jobs are
+ * slowing each other down and the limit is cut; while it stays close and
+ * all slots are busy, the limit grows by one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestionExecutor {
+
+    private final IngestionPipeline ingestionPipeline;
+
+    // 0 sizes the pool from the processors and the embed workers
+    @Value("${app.rag.ingestion.workers:0}")
+    private int maxWorkers;
+
+    @Value("${app.rag.ingestion.min-workers:1}")
+    private int minWorkers;
+
+    // Latency above this multiple of the best seen counts as congestion
+    @Value("${app.rag.ingestion.latency-tolerance:1.5}")
+    private double latencyTolerance;
+
+    @Value("${app.rag.ingestion.decrease-factor:0.75}")
+    private double decreaseFactor;
+
+    private ThreadPoolExecutor executor;
+    private final AtomicInteger reserved = new AtomicInteger();
+    private volatile int limit;
+    private volatile double baselineMillisPerChunk;
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder increases = new LongAdder();
+    private final LongAdder decreases = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (maxWorkers <= 0) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            maxWorkers = Math.max(1, Math.min(processors, ingestionPipeline.getEmbedWorkers()));
+        }
+        minWorkers = Math.max(1, Math.min(minWorkers, maxWorkers));
+        limit = minWorkers;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxWorkers, maxWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxWorkers), runnable -> {
+                    Thread thread = new Thread(runnable, "ingest-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("Ingestion executor started with up to {} workers", maxWorkers);
+    }
+
+    /**
+     * Takes a slot if fewer than the current limit are in use. A reserved
+     * slot must be used with {@link #execute} or given back with
+     * {@link #release}.
+     */
+    public boolean tryReserve() {
+        while (true) {
+            int current = reserved.get();
+            if (current >= limit || executor.isShutdown()) {
+                throttled.increment();
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        reserved.decrementAndGet();
+    }
+
+    /**
+     * Runs the task in a reserved slot and frees the slot when it is done.
+     */
+    public void execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops taking tasks and waits up to the given time for running ones to
+     * finish. Returns false if some are still running.
+     */
+    public boolean drain(long timeoutSeconds) {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Additive increase while the pipeline keeps up and the slots are all
+     * used, multiplicative decrease when its latency climbs.
+     */
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.adjust-interval-ms:5000}")
+    public void adjust() {
+        double latency = ingestionPipeline.getRecentMillisPerChunk();
+        if (latency <= 0 || executor.getActiveCount() == 0) {
+            return;
+        }
+        if (baselineMillisPerChunk == 0 || latency < baselineMillisPerChunk) {
+            baselineMillisPerChunk = latency;
+        }
+
+        int current = limit;
+        if (latency > baselineMillisPerChunk * latencyTolerance) {
+            int decreased = Math.max(minWorkers, (int) (current * decreaseFactor));
+            if (decreased < current) {
+                limit = decreased;
+                decreases.increment();
+                log.info("Ingestion latency {} ms/chunk against {} ms/chunk best, lowering limit to {}",
+                        String.format("%.2f", latency), String.format("%.2f", baselineMillisPerChunk), decreased);
+            }
+            // Let the baseline follow slow drifts, e.g. larger documents
+            baselineMillisPerChunk = baselineMillisPerChunk * 1.05;
+        } else if (reserved.get() >= current && current < maxWorkers) {
+            limit = current + 1;
+            increases.increment();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", limit);
+        stats.put("maxWorkers", maxWorkers);
+        stats.put("reserved", reserved.get());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("throttled", throttled.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("limitIncreases", increases.sum());
+        stats.put("limitDecreases", decreases.sum());
+        stats.put("recentMillisPerChunk", ingestionPipeline.getRecentMillisPerChunk());
+        stats.put("baselineMillisPerChunk", baselineMillisPerChunk);
+        return stats;
+    }
+}
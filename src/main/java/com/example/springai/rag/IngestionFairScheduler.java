@@ -0,0 +1,159 @@
+package com.example.springai.rag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Chooses whose ingestion job is claimed next, so that one owner's bulk
+ * upload does not hold up everyone else's. Owners with claimable work take
+ * turns in deficit round-robin: on each turn an owner is credited its weight
+ * times the quantum, in bytes, and its oldest job is claimed if the credit
+ * covers the job's size. After a claim the owner goes to the back of the
+ * rotation, so a small upload waits for at most one job per other owner.
+ * While other owners have claimable work, owners already running their
+ * maximum number of jobs in the cluster sit out until one finishes; an
+ * owner alone in the queue may use every worker.
+ *
+ * The rotation and credits are kept per node. The in-flight limits hold
+ * cluster-wide: the claim callback re-counts the owner's running jobs under
+ * a lock before claiming, since the loads are only a snapshot.
+ */
+@Component
+public class IngestionFairScheduler {
+
+    // Jobs are charged at least this much, so tiny files are not free
+    private static final long MIN_JOB_COST = 256 * 1024;
+    private static final int MAX_VISITS = 100_000;
+
+    // owner=weight pairs, comma separated; others get the default weight
+    @Value("${app.rag.ingestion.fairness.weights:}")
+    private String weightsConfig;
+
+    @Value("${app.rag.ingestion.fairness.default-weight:1}")
+    private int defaultWeight;
+
+    // Running jobs per owner across the cluster while others are waiting,
+    // 0 for no limit
+    @Value("${app.rag.ingestion.fairness.max-in-flight:0}")
+    private int defaultMaxInFlight;
+
+    // owner=limit pairs, comma separated
+    @Value("${app.rag.ingestion.fairness.max-in-flight-overrides:}")
+    private String maxInFlightConfig;
+
+    @Value("${app.rag.ingestion.fairness.quantum-mb:16}")
+    private long quantumMb;
+
+    private Map<String, Integer> weights;
+    private Map<String, Integer> maxInFlight;
+
+    // Owners in rotation order with their unspent credit in bytes
+    private final LinkedHashMap<String, Long> deficits = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        weights = parseOwnerValues(weightsConfig);
+        maxInFlight = parseOwnerValues(maxInFlightConfig);
+    }
+
+    /**
+     * Picks the next job among the owners' loads. {@code lockOldest} is
+     * given an owner and the in-flight limit to enforce for it (0 for none),
+     * and locks and returns the owner's oldest claimable job, or nothing if
+     * the limit is reached or all of them are being claimed by other
+     * workers; it is called at most once per owner.
+     */
+    public synchronized Optional<IngestionJob> select(List<IngestionJobRepository.OwnerLoad> loads,
+            BiFunction<String, Integer, Optional<IngestionJob>> lockOldest) {
+        long waitingOwners = loads.stream().filter(load -> load.getClaimable() > 0).count();
+        Map<String, Integer> limits = new HashMap<>();
+        Set<String> eligible = new LinkedHashSet<>();
+        for (IngestionJobRepository.OwnerLoad load : loads) {
+            // Limits only matter while someone else is waiting
+            int limit = waitingOwners > 1 ? limitFor(load.getOwnerId()) : 0;
+            if (load.getClaimable() > 0 && (limit <= 0 || load.getRunning() < limit)) {
+                eligible.add(load.getOwnerId());
+                limits.put(load.getOwnerId(), limit);
+            }
+        }
+        // Owners that ran out of claimable work leave the rotation and
+        // forfeit their credit, newcomers join at the back
+        deficits.keySet().retainAll(eligible);
+        eligible.forEach(owner -> deficits.putIfAbsent(owner, 0L));
+
+        Map<String, Optional<IngestionJob>> oldest = new HashMap<>();
+        int unavailable = 0;
+        for (int visit = 0; visit < MAX_VISITS && unavailable < deficits.size(); visit++) {
+            String owner = deficits.keySet().iterator().next();
+            boolean firstVisit = !oldest.containsKey(owner);
+            Optional<IngestionJob> job = oldest.computeIfAbsent(owner,
+                    key -> lockOldest.apply(key, limits.get(key)));
+            long deficit = deficits.remove(owner);
+            if (job.isEmpty()) {
+                if (firstVisit) {
+                    unavailable++;
+                }
+                deficits.put(owner, deficit);
+                continue;
+            }
+
+            long cost = Math.max(MIN_JOB_COST, job.get().getFileSize());
+            if (deficit < cost) {
+                deficit += quantum(owner);
+            }
+            if (deficit >= cost) {
+                deficits.put(owner, deficit - cost);
+                return job;
+            }
+            deficits.put(owner, deficit);
+        }
+        // Nothing could be locked, or the visit limit was hit as a safeguard
+        return oldest.values().stream().filter(Optional::isPresent).map(Optional::get).findFirst();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rotation", new ArrayList<>(deficits.keySet()));
+        stats.put("creditBytes", new LinkedHashMap<>(deficits));
+        stats.put("weights", weights);
+        stats.put("defaultWeight", defaultWeight);
+        stats.put("maxInFlight", defaultMaxInFlight);
+        stats.put("maxInFlightOverrides", maxInFlight);
+        return stats;
+    }
+
+    private int limitFor(String owner) {
+        return maxInFlight.getOrDefault(owner, defaultMaxInFlight);
+    }
+
+    private long quantum(String owner) {
+        return Math.max(1, weights.getOrDefault(owner, defaultWeight)) * quantumMb * 1024 * 1024;
+    }
+
+    private Map<String, Integer> parseOwnerValues(String config) {
+        Map<String, Integer> values = new HashMap<>();
+        if (config == null || config.isBlank()) {
+            return values;
+        }
+        for (String pair : config.split(",")) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected owner=value but got: " + pair);
+            }
+            values.put(parts[0].strip(), Integer.parseInt(parts[1].strip()));
+        }
+        return values;
+    }
+}
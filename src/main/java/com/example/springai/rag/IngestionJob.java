@@ -0,0 +1,104 @@
+package com.example.springai.rag;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Durable ingestion work item. Workers on any node claim queued jobs, or
+ * running jobs whose lease has expired, and renew the lease with heartbeats
+ * while they process them.
+ */
+@Data
+@Entity
+@Table(name = "ingestion_jobs", indexes = {
+    @Index(name = "idx_ingestion_jobs_claim", columnList = "status, available_at")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Version recording the outcome; its id is the job id clients poll
+    @Column(name = "version_id", nullable = false, unique = true)
+    private Long versionId;
+
+    @Column(name = "document_id", nullable = false)
+    private String documentId;
+
+    @Column(name = "owner_id")
+    private String ownerId;
+
+    @Column(name = "collection_id")
+    private String collectionId;
+
+    // Comma separated
+    @Column(name = "tags", columnDefinition = "TEXT")
+    private String tags;
+
+    @Column(name = "spool_path", nullable = false, columnDefinition = "TEXT")
+    private String spoolPath;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "file_size")
+    private long fileSize;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Status status = Status.QUEUED;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "worker_id")
+    private String workerId;
+
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+        if (availableAt == null) {
+            availableAt = createdAt;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
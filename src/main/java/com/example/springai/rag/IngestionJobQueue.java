@@ -0,0 +1,201 @@
+package com.example.springai.rag;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cluster-wide ingestion queue on the {@code ingestion_jobs} table. Claims
+ * lock rows with {@code FOR UPDATE SKIP LOCKED}, so any number of workers on
+ * any number of nodes can poll it concurrently. A claimed job carries a lease
+ * that its worker renews with heartbeats; jobs of a crashed worker become
+ * claimable again once their lease expires, until they run out of attempts.
+ * Which owner's job is claimed next is left to the
+ * {@link IngestionFairScheduler}.
+ *
+ * Leases and availability times are computed from the database's clock,
+ * never a node's, since they are compared across nodes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionJobQueue {
+
+    private final IngestionJobRepository jobRepository;
+    private final IngestionFairScheduler fairScheduler;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.rag.ingestion.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${app.rag.ingestion.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.rag.ingestion.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    @Transactional
+    public IngestionJob enqueue(DocumentVersion version, SpooledDocument source, String ownerId,
+            String collectionId, Set<String> tags) {
+        IngestionJob job = new IngestionJob();
+        job.setVersionId(version.getId());
+        job.setDocumentId(version.getDocumentId());
+        job.setOwnerId(ownerId);
+        job.setCollectionId(collectionId);
+        job.setTags(tags != null && !tags.isEmpty() ? String.join(",", tags) : null);
+        job.setSpoolPath(source.getPath().toString());
+        job.setFileName(source.getFilename());
+        job.setContentType(source.getContentType());
+        job.setFileSize(source.getSize());
+        job.setAvailableAt(jobRepository.databaseNow());
+        return jobRepository.save(job);
+    }
+
+    @Transactional
+    public Optional<IngestionJob> claim(String workerId) {
+        LocalDateTime now = jobRepository.databaseNow();
+        List<IngestionJobRepository.OwnerLoad> loads = jobRepository.findOwnerLoads(now, maxAttempts);
+        return fairScheduler.select(loads, (owner, limit) -> lockNextClaimable(owner, limit, now)).map(job -> {
+            if (job.getStatus() == IngestionJob.Status.RUNNING) {
+                log.warn("Reclaiming ingestion job {} from worker {} after its lease expired",
+                        job.getId(), job.getWorkerId());
+            }
+            job.setStatus(IngestionJob.Status.RUNNING);
+            job.setWorkerId(workerId);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setHeartbeatAt(now);
+            job.setLeaseExpiresAt(now.plusSeconds(leaseSeconds));
+            return jobRepository.save(job);
+        });
+    }
+
+    /**
+     * Locks the owner's next claimable job, if the owner is below the given
+     * limit. Claims of a limited owner are serialized across the cluster by
+     * an advisory lock held until the claim commits, so the running count
+     * read here cannot be overtaken by another node's claim.
+     */
+    private Optional<IngestionJob> lockNextClaimable(String owner, int limit, LocalDateTime now) {
+        if (limit > 0) {
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext('ingestion-owner'), hashtext(?))",
+                    rs -> { }, owner);
+            if (jobRepository.countRunning(owner, now) >= limit) {
+                return Optional.empty();
+            }
+        }
+        return jobRepository.lockNextClaimable(owner, now, maxAttempts);
+    }
+
+    /**
+     * Fails jobs whose lease expired on their last attempt. Such a job took
+     * its worker down with it every time, so it is not claimed again.
+     *
+     * @return the jobs failed, for their versions to be cleaned up
+     */
+    @Transactional
+    public List<IngestionJob> failAbandoned(int limit) {
+        LocalDateTime now = jobRepository.databaseNow();
+        List<IngestionJob> abandoned = jobRepository.lockAbandoned(now, maxAttempts, limit);
+        for (IngestionJob job : abandoned) {
+            log.warn("Failing ingestion job {}: lease expired on worker {} after {} attempts",
+                    job.getId(), job.getWorkerId(), job.getAttempts());
+            job.setStatus(IngestionJob.Status.FAILED);
+            job.setLastError("Lease expired after " + job.getAttempts() + " attempts");
+            job.setLeaseExpiresAt(null);
+        }
+        return jobRepository.saveAll(abandoned);
+    }
+
+    /**
+     * Extends the leases of the worker's running jobs.
+     *
+     * @return the number of jobs the worker still owns
+     */
+    @Transactional
+    public int renewLeases(Collection<Long> jobIds, String workerId) {
+        LocalDateTime now = jobRepository.databaseNow();
+        return jobRepository.renewLeases(jobIds, workerId, now, now.plusSeconds(leaseSeconds));
+    }
+
+    /**
+     * Marks the job completed, unless the worker lost its lease meanwhile.
+     */
+    @Transactional
+    public boolean complete(Long jobId, String workerId) {
+        IngestionJob job = ownedJob(jobId, workerId);
+        if (job == null) {
+            return false;
+        }
+        job.setStatus(IngestionJob.Status.COMPLETED);
+        job.setLeaseExpiresAt(null);
+        job.setLastError(null);
+        jobRepository.save(job);
+        return true;
+    }
+
+    /**
+     * Records a failed attempt. The job is queued again with exponential
+     * backoff until it has used up its attempts.
+     *
+     * @return true if the job will be retried
+     */
+    @Transactional
+    public boolean fail(Long jobId, String workerId, String error) {
+        IngestionJob job = ownedJob(jobId, workerId);
+        if (job == null) {
+            return true;
+        }
+        job.setLastError(error);
+        job.setLeaseExpiresAt(null);
+        if (job.getAttempts() < maxAttempts) {
+            long backoff = retryBackoffSeconds << Math.min(job.getAttempts() - 1, 10);
+            job.setStatus(IngestionJob.Status.QUEUED);
+            job.setWorkerId(null);
+            job.setAvailableAt(jobRepository.databaseNow().plusSeconds(backoff));
+            jobRepository.save(job);
+            log.warn("Ingestion job {} failed on attempt {}, retrying in {} s", jobId, job.getAttempts(), backoff);
+            return true;
+        }
+        job.setStatus(IngestionJob.Status.FAILED);
+        jobRepository.save(job);
+        return false;
+    }
+
+    /**
+     * Puts a job back in the queue without counting the attempt, used when
+     * a worker shuts down before finishing it.
+     */
+    @Transactional
+    public void release(Long jobId, String workerId) {
+        IngestionJob job = ownedJob(jobId, workerId);
+        if (job == null) {
+            return;
+        }
+        job.setStatus(IngestionJob.Status.QUEUED);
+        job.setWorkerId(null);
+        job.setLeaseExpiresAt(null);
+        job.setAttempts(Math.max(0, job.getAttempts() - 1));
+        job.setAvailableAt(jobRepository.databaseNow());
+        jobRepository.save(job);
+    }
+
+    private IngestionJob ownedJob(Long jobId, String workerId) {
+        IngestionJob job = jobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || job.getStatus() != IngestionJob.Status.RUNNING
+                || !workerId.equals(job.getWorkerId())) {
+            log.warn("Ingestion job {} is no longer owned by worker {}", jobId, workerId);
+            return null;
+        }
+        return job;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.springai.rag;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Long> {
+
+    Optional<IngestionJob> findByVersionId(Long versionId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM IngestionJob j WHERE j.id = :id")
+    Optional<IngestionJob> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * The database's clock, which all lease and availability times are
+     * taken from, so that clock skew between nodes cannot expire live leases.
+     */
+    @Query(value = "SELECT LOCALTIMESTAMP", nativeQuery = true)
+    LocalDateTime databaseNow();
+
+    /**
+     * Locks the owner's oldest claimable job: queued and due, or running
+     * with an expired lease and attempts left. Rows locked by other workers
+     * are skipped, so concurrent claimers never wait on each other or get
+     * the same job. Jobs without an owner are grouped under the empty owner.
+     */
+    @Query(value = "SELECT * FROM ingestion_jobs "
+            + "WHERE COALESCE(owner_id, '') = :ownerId "
+            + "AND ((status = 'QUEUED' AND available_at <= :now) "
+            + "OR (status = 'RUNNING' AND lease_expires_at < :now AND attempts < :maxAttempts)) "
+            + "ORDER BY available_at, id "
+            + "LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<IngestionJob> lockNextClaimable(
+            @Param("ownerId") String ownerId,
+            @Param("now") LocalDateTime now,
+            @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Locks running jobs whose lease expired on their last attempt, whose
+     * worker presumably crashed while processing them.
+     */
+    @Query(value = "SELECT * FROM ingestion_jobs "
+            + "WHERE status = 'RUNNING' AND lease_expires_at < :now AND attempts >= :maxAttempts "
+            + "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<IngestionJob> lockAbandoned(
+            @Param("now") LocalDateTime now,
+            @Param("maxAttempts") int maxAttempts,
+            @Param("limit") int limit);
+
+    /**
+     * Per owner, the jobs that could be claimed now and the jobs running
+     * under a live lease anywhere in the cluster.
+     */
+    @Query(value = "SELECT COALESCE(owner_id, '') AS \"ownerId\", "
+            + "COUNT(*) FILTER (WHERE (status = 'QUEUED' AND available_at <= :now) "
+            + "OR (status = 'RUNNING' AND lease_expires_at < :now AND attempts < :maxAttempts)) AS \"claimable\", "
+            + "COUNT(*) FILTER (WHERE status = 'RUNNING' AND lease_expires_at >= :now) AS \"running\" "
+            + "FROM ingestion_jobs WHERE status IN ('QUEUED', 'RUNNING') "
+            + "GROUP BY COALESCE(owner_id, '')", nativeQuery = true)
+    List<OwnerLoad> findOwnerLoads(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts);
+
+    @Query(value = "SELECT COUNT(*) FROM ingestion_jobs "
+            + "WHERE COALESCE(owner_id, '') = :ownerId "
+            + "AND status = 'RUNNING' AND lease_expires_at >= :now", nativeQuery = true)
+    long countRunning(@Param("ownerId") String ownerId, @Param("now") LocalDateTime now);
+
+    interface OwnerLoad {
+
+        String getOwnerId();
+
+        long getClaimable();
+
+        long getRunning();
+    }
+
+    @Modifying
+    @Query("UPDATE IngestionJob j SET j.heartbeatAt = :now, j.leaseExpiresAt = :leaseExpiresAt "
+            + "WHERE j.id IN :ids AND j.workerId = :workerId AND j.status = 'RUNNING'")
+    int renewLeases(
+            @Param("ids") Collection<Long> ids,
+            @Param("workerId") String workerId,
+            @Param("now") LocalDateTime now,
+            @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+}
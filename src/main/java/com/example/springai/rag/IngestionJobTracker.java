@@ -0,0 +1,199 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory progress of ingestion jobs running on this node, keyed by the
+ * id of the {@link DocumentVersion} that backs the job. Progress is pushed to
+ * server-sent event subscribers, at most every
+ * {@code app.rag.ingestion.progress-interval-ms} while the job runs and
+ * always on completion. Finished jobs are kept for a while so late pollers
+ * still see the final counts; after that the version status is the record.
+ */
+@Slf4j
+@Component
+public class IngestionJobTracker {
+
+    @Value("${app.rag.ingestion.progress-interval-ms:250}")
+    private long progressIntervalMs;
+
+    @Value("${app.rag.ingestion.job-retention-minutes:30}")
+    private long retentionMinutes;
+
+    @Value("${app.rag.ingestion.sse-timeout-ms:1800000}")
+    private long sseTimeoutMs;
+
+    private final Map<Long, JobProgress> jobs = new ConcurrentHashMap<>();
+
+    public void register(DocumentVersion version) {
+        jobs.put(version.getId(), new JobProgress(version.getId(), version.getDocumentId()));
+    }
+
+    public void progress(Long jobId, int extracted, int embedded, int persisted) {
+        JobProgress job = jobs.get(jobId);
+        if (job == null || job.isFinished()) {
+            return;
+        }
+        job.status = DocumentVersion.ProcessingStatus.PROCESSING;
+        job.extracted = extracted;
+        job.embedded = embedded;
+        job.persisted = persisted;
+
+        long now = System.currentTimeMillis();
+        if (now - job.lastSent >= progressIntervalMs) {
+            job.lastSent = now;
+            send(job, false);
+        }
+    }
+
+    public void complete(Long jobId, int chunkCount) {
+        finish(jobId, DocumentVersion.ProcessingStatus.COMPLETED, null, chunkCount);
+    }
+
+    public void fail(Long jobId, String error) {
+        finish(jobId, DocumentVersion.ProcessingStatus.FAILED, error, -1);
+    }
+
+    /**
+     * Drops the job from this node, e.g. when it goes back to the queue and
+     * may be picked up elsewhere. Subscribers are closed.
+     */
+    public void forget(Long jobId) {
+        JobProgress job = jobs.remove(jobId);
+        if (job != null) {
+            job.emitters.forEach(SseEmitter::complete);
+            job.emitters.clear();
+        }
+    }
+
+    /**
+     * Current progress of the job, or null if this node does not know it.
+     */
+    public Map<String, Object> getProgress(Long jobId) {
+        JobProgress job = jobs.get(jobId);
+        return job != null ? job.snapshot() : null;
+    }
+
+    /**
+     * Subscribes to progress events of the job, or returns null if this node
+     * does not know it. The emitter is completed when the job finishes.
+     */
+    public SseEmitter subscribe(Long jobId) {
+        JobProgress job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(e -> job.emitters.remove(emitter));
+        job.emitters.add(emitter);
+
+        // Send the current state; a job that finished meanwhile completes here
+        synchronized (job) {
+            if (!sendTo(emitter, job.snapshot()) || job.isFinished()) {
+                job.emitters.remove(emitter);
+                emitter.complete();
+            }
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.job-eviction-interval-ms:60000}")
+    public void evictFinished() {
+        long cutoff = System.currentTimeMillis() - retentionMinutes * 60_000L;
+        jobs.values().removeIf(job -> job.isFinished() && job.finishedAt < cutoff);
+    }
+
+    private void finish(Long jobId, DocumentVersion.ProcessingStatus status, String error, int chunkCount) {
+        JobProgress job = jobs.get(jobId);
+        if (job == null) {
+            return;
+        }
+        synchronized (job) {
+            job.status = status;
+            job.error = error;
+            if (chunkCount >= 0) {
+                job.extracted = chunkCount;
+                job.embedded = chunkCount;
+                job.persisted = chunkCount;
+            }
+            job.finishedAt = System.currentTimeMillis();
+            send(job, true);
+        }
+    }
+
+    private void send(JobProgress job, boolean last) {
+        Map<String, Object> snapshot = job.snapshot();
+        for (SseEmitter emitter : job.emitters) {
+            if (!sendTo(emitter, snapshot)) {
+                job.emitters.remove(emitter);
+            } else if (last) {
+                emitter.complete();
+            }
+        }
+        if (last) {
+            job.emitters.clear();
+        }
+    }
+
+    private boolean sendTo(SseEmitter emitter, Map<String, Object> snapshot) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(snapshot));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping progress subscriber: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static class JobProgress {
+
+        private final Long jobId;
+        private final String documentId;
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private volatile DocumentVersion.ProcessingStatus status = DocumentVersion.ProcessingStatus.PENDING;
+        private volatile int extracted;
+        private volatile int embedded;
+        private volatile int persisted;
+        private volatile String error;
+        private volatile long lastSent;
+        private volatile long finishedAt;
+
+        JobProgress(Long jobId, String documentId) {
+            this.jobId = jobId;
+            this.documentId = documentId;
+        }
+
+        boolean isFinished() {
+            return status == DocumentVersion.ProcessingStatus.COMPLETED
+                    || status == DocumentVersion.ProcessingStatus.FAILED;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("jobId", jobId);
+            snapshot.put("documentId", documentId);
+            snapshot.put("status", status);
+            snapshot.put("chunksExtracted", extracted);
+            snapshot.put("chunksEmbedded", embedded);
+            snapshot.put("chunksPersisted", persisted);
+            if (error != null) {
+                snapshot.put("error", error);
+            }
+            return snapshot;
+        }
+    }
+}
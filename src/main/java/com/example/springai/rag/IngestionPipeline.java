@@ -0,0 +1,583 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Staged ingestion: extract and chunk, embed, persist. Extraction runs on
+ * the calling thread and hands batches of chunks to a bounded embed queue;
+ * long-lived embed workers pass them on to a bounded persist queue drained
+ * by persist workers. Extraction of the next pages overlaps with embedding
+ * and persisting of earlier batches, and full queues push back on the
+ * producers, so memory stays bounded however many documents are in flight.
+ *
+ * Each batch is persisted in its own transaction, which also writes a
+ * pending tombstone for its documents, so retrieval does not see any chunk
+ * of a document before the caller reveals it with its metadata. When any
+ * stage fails, the remaining batches of that document are skipped and,
+ * unless the run is checkpointed, the pending tombstones are turned into
+ * regular ones once no batch of it is in flight, and the purger removes the
+ * chunks already written.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestionPipeline {
+
+    // Idle workers check for shutdown this often
+    private static final long WORKER_POLL_MS = 500;
+
+    private final DocumentProcessor documentProcessor;
+    private final EmbeddingService embeddingService;
+    private final TextChunkRepository textChunkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ChunkBulkLoader chunkBulkLoader;
+    private final DocumentTombstoneRepository tombstoneRepository;
+
+    @Value("${app.rag.ingestion.batch-size:50}")
+    private int batchSize;
+
+    // Documents at least this large are persisted with binary COPY in larger
+    // batches; 0 disables bulk loading
+    @Value("${app.rag.ingestion.bulk-load-threshold-mb:5}")
+    private long bulkLoadThresholdMb;
+
+    @Value("${app.rag.ingestion.bulk-batch-size:500}")
+    private int bulkBatchSize;
+
+    // 0 uses one worker per available processor
+    @Value("${app.rag.ingestion.embed-workers:0}")
+    private int embedWorkers;
+
+    @Value("${app.rag.ingestion.persist-workers:2}")
+    private int persistWorkers;
+
+    // Batches waiting per stage; bounds the chunks held in memory
+    @Value("${app.rag.ingestion.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${app.rag.ingestion.await-timeout-minutes:60}")
+    private long awaitTimeoutMinutes;
+
+    @Value("${app.rag.ingestion.shutdown-grace-seconds:30}")
+    private long shutdownGraceSeconds;
+
+    private BlockingQueue<Batch> embedQueue;
+    private BlockingQueue<Batch> persistQueue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final StageStats extractStats = new StageStats();
+    private final StageStats embedStats = new StageStats();
+    private final StageStats persistStats = new StageStats();
+
+    @PostConstruct
+    public void start() {
+        if (embedWorkers <= 0) {
+            embedWorkers = Runtime.getRuntime().availableProcessors();
+        }
+        embedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        persistQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        for (int i = 1; i <= embedWorkers; i++) {
+            startWorker("ingest-embed-" + i, this::runEmbedWorker);
+        }
+        for (int i = 1; i <= persistWorkers; i++) {
+            startWorker("ingest-persist-" + i, this::runPersistWorker);
+        }
+        log.info("Ingestion pipeline started with {} embed and {} persist workers",
+                embedWorkers, persistWorkers);
+    }
+
+    /**
+     * Fails the jobs of all batches still queued, so callers waiting on them
+     * return, and lets the workers finish the batch in hand within the
+     * shutdown grace period before interrupting them.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        failQueuedBatches();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownGraceSeconds);
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.stream().filter(Thread::isAlive).forEach(Thread::interrupt);
+        // Batches embed workers handed on while the persist workers stopped
+        failQueuedBatches();
+    }
+
+    public int ingest(String documentId, MultipartFile file, ChunkingOptions options) throws IOException {
+        return ingest(documentId, DocumentSource.of(file), options, (extracted, embedded, persisted) -> { });
+    }
+
+    public int ingest(String documentId, DocumentSource source, ChunkingOptions options,
+            ProgressListener listener) throws IOException {
+        return ingest(documentId, source, options, listener, null);
+    }
+
+    /**
+     * Runs the document through the pipeline and blocks until all of its
+     * chunks are persisted, or the await timeout passes. The listener is
+     * called from the stage threads after every batch. The chunks stay
+     * hidden by a pending tombstone until the caller reveals the document
+     * with {@link DocumentTombstoneRepository#revealDocument}, in the
+     * transaction that records its metadata.
+     *
+     * With checkpoints, chunks already recorded as persisted are skipped and
+     * every batch is recorded in the transaction that stores it; a failed run
+     * leaves its persisted batches in place, still hidden, to be resumed.
+     * Without, a failed run has the chunks it wrote purged.
+     *
+     * @return the number of chunks stored, including skipped ones
+     */
+    public int ingest(String documentId, DocumentSource source, ChunkingOptions options,
+            ProgressListener listener, BatchCheckpoints checkpoints) throws IOException {
+        boolean bulkLoad = bulkLoadThresholdMb > 0 && source.getSize() >= bulkLoadThresholdMb * 1024 * 1024;
+        Job job = new Job(documentId, listener, checkpoints, bulkLoad ? bulkBatchSize : batchSize, bulkLoad);
+        job.documentIds.add(documentId);
+        BatchSubmitter submitter = new BatchSubmitter(job);
+        long start = System.nanoTime();
+
+        try {
+            documentProcessor.processDocument(source, options, chunk -> {
+                chunk.setDocumentId(documentId);
+                submitter.add(chunk);
+            });
+            submitter.flush();
+        } catch (Exception e) {
+            job.fail(e);
+        } finally {
+            extractStats.record(job.extracted.get(), System.nanoTime() - start - submitter.blockedNanos);
+            job.batchDone();
+        }
+        return job.await();
+    }
+
+    /**
+     * Starts a run that ingests many documents as one job, for archives of
+     * small files. Chunks of consecutive documents share embedding batches
+     * and are bulk loaded together, so small documents do not each pay for
+     * a partial batch and a transaction of their own. Each document stays
+     * hidden until it is revealed, like a single ingested one.
+     */
+    public MultiDocumentRun startMultiDocumentRun(ProgressListener listener) {
+        return new MultiDocumentRun(new Job("multi-document run", listener, null, bulkBatchSize, true));
+    }
+
+    public int getEmbedWorkers() {
+        return embedWorkers;
+    }
+
+    /**
+     * Recent time to embed and persist one chunk, a moving average over the
+     * last batches; 0 before any batch has completed.
+     */
+    public double getRecentMillisPerChunk() {
+        return (embedStats.recentNanosPerChunk + persistStats.recentNanosPerChunk) / 1e6;
+    }
+
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("extract", extractStats.toMap(0));
+        stats.put("embed", embedStats.toMap(embedQueue.size()));
+        stats.put("persist", persistStats.toMap(persistQueue.size()));
+        stats.put("pdf", documentProcessor.getPdfStats());
+        return stats;
+    }
+
+    /**
+     * Documents added to a multi-document run. Chunks are submitted as they
+     * are added, from the calling thread; {@link #finish()} blocks until all
+     * of them are persisted. If the run fails, the chunks of every document
+     * added to it are purged.
+     */
+    public final class MultiDocumentRun {
+
+        private final Job job;
+        private final BatchSubmitter submitter;
+        private final long start = System.nanoTime();
+
+        private MultiDocumentRun(Job job) {
+            this.job = job;
+            this.submitter = new BatchSubmitter(job);
+        }
+
+        public void add(String documentId, List<TextChunk> chunks) {
+            job.documentIds.add(documentId);
+            for (TextChunk chunk : chunks) {
+                chunk.setDocumentId(documentId);
+                submitter.add(chunk);
+            }
+        }
+
+        /**
+         * Ends the run without waiting for it; the chunks of all documents
+         * added so far are purged once no batch is in flight.
+         */
+        public void abort(Throwable cause) {
+            job.fail(cause);
+            job.batchDone();
+        }
+
+        /**
+         * @return the number of chunks stored
+         */
+        public int finish() throws IOException {
+            try {
+                submitter.flush();
+            } catch (Exception e) {
+                job.fail(e);
+            } finally {
+                extractStats.record(job.extracted.get(), System.nanoTime() - start - submitter.blockedNanos);
+                job.batchDone();
+            }
+            return job.await();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        void onProgress(int extracted, int embedded, int persisted);
+    }
+
+    public interface BatchCheckpoints {
+
+        boolean isPersisted(int chunkIndex);
+
+        // Called inside the transaction that stores the batch
+        void record(int firstChunk, int chunkCount);
+    }
+
+    private void failQueuedBatches() {
+        List<Batch> queued = new ArrayList<>();
+        embedQueue.drainTo(queued);
+        persistQueue.drainTo(queued);
+        IllegalStateException cause = new IllegalStateException("Ingestion pipeline shut down");
+        for (Batch batch : queued) {
+            batch.job.fail(cause);
+            batch.job.batchDone();
+        }
+    }
+
+    private void startWorker(String name, Runnable loop) {
+        Thread thread = new Thread(loop, name);
+        thread.setDaemon(true);
+        thread.start();
+        workers.add(thread);
+    }
+
+    private void runEmbedWorker() {
+        while (running) {
+            Batch batch;
+            try {
+                batch = embedQueue.poll(WORKER_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == null) {
+                continue;
+            }
+            if (batch.job.isFailed()) {
+                batch.job.batchDone();
+                continue;
+            }
+            try {
+                long start = System.nanoTime();
+                embeddingService.generateEmbeddings(batch.chunks);
+                embedStats.record(batch.chunks.size(), System.nanoTime() - start);
+                batch.job.embedded.addAndGet(batch.chunks.size());
+                batch.job.reportProgress();
+                persistQueue.put(batch);
+            } catch (InterruptedException e) {
+                batch.job.fail(e);
+                batch.job.batchDone();
+                return;
+            } catch (Exception e) {
+                batch.job.fail(e);
+                batch.job.batchDone();
+            }
+        }
+    }
+
+    private void runPersistWorker() {
+        while (running) {
+            Batch batch;
+            try {
+                batch = persistQueue.poll(WORKER_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == null) {
+                continue;
+            }
+            try {
+                if (!batch.job.isFailed()) {
+                    long start = System.nanoTime();
+                    Set<String> documentIds = batch.documentIds();
+                    transactionTemplate.executeWithoutResult(status -> {
+                        for (String documentId : documentIds) {
+                            if (!batch.job.hidden.contains(documentId)) {
+                                tombstoneRepository.hidePending(documentId);
+                            }
+                        }
+                        if (batch.job.bulkLoad) {
+                            chunkBulkLoader.load(batch.chunks);
+                        } else {
+                            textChunkRepository.saveAll(batch.chunks);
+                        }
+                        if (batch.job.checkpoints != null) {
+                            batch.job.checkpoints.record(
+                                    batch.chunks.get(0).getChunkIndex(), batch.chunks.size());
+                        }
+                    });
+                    batch.job.hidden.addAll(documentIds);
+                    persistStats.record(batch.chunks.size(), System.nanoTime() - start);
+                    batch.job.persisted.addAndGet(batch.chunks.size());
+                    batch.job.reportProgress();
+                }
+            } catch (Exception e) {
+                batch.job.fail(e);
+            } finally {
+                batch.job.batchDone();
+            }
+        }
+    }
+
+    /**
+     * Groups chunks into batches on the extracting thread and enqueues them, blocking while the embed queue is full.
+     */
+    private final class BatchSubmitter {
+
+        private final Job job;
+        private List<TextChunk> chunks;
+        private long blockedNanos;
+
+        BatchSubmitter(Job job) {
+            this.job = job;
+            this.chunks = new ArrayList<>(job.batchSize);
+        }
+
+        void add(TextChunk chunk) {
+            job.extracted.incrementAndGet();
+            if (job.checkpoints != null && job.checkpoints.isPersisted(chunk.getChunkIndex())) {
+                job.embedded.incrementAndGet();
+                job.persisted.incrementAndGet();
+                return;
+            }
+            // Checkpoints cover runs of consecutive ordinals; chunks of
+            // different documents may share a batch
+            TextChunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (last != null && last.getDocumentId().equals(chunk.getDocumentId())
+                    && chunk.getChunkIndex() != last.getChunkIndex() + 1) {
+                flush();
+            }
+            chunks.add(chunk);
+            if (chunks.size() >= job.batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (job.isFailed()) {
+                throw new IllegalStateException("Ingestion of " + job.name + " failed", job.failure);
+            }
+            if (!running) {
+                throw new IllegalStateException("Ingestion pipeline shut down");
+            }
+            if (chunks.isEmpty()) {
+                return;
+            }
+            Batch batch = new Batch(job, chunks);
+            chunks = new ArrayList<>(job.batchSize);
+            job.outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                embedQueue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.batchDone();
+                throw new IllegalStateException("Interrupted while queueing chunks", e);
+            }
+            blockedNanos += System.nanoTime() - start;
+            job.reportProgress();
+        }
+    }
+
+    private final class Job {
+
+        // Document id, or a description for multi-document runs
+        private final String name;
+        private final Set<String> documentIds = ConcurrentHashMap.newKeySet();
+        // Documents whose pending tombstone has been committed
+        private final Set<String> hidden = ConcurrentHashMap.newKeySet();
+        private final ProgressListener listener;
+        private final BatchCheckpoints checkpoints;
+        private final int batchSize;
+        private final boolean bulkLoad;
+        private final CompletableFuture<Integer> done = new CompletableFuture<>();
+        // Batches in flight, plus one while extraction is running
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private final AtomicInteger extracted = new AtomicInteger();
+        private final AtomicInteger embedded = new AtomicInteger();
+        private final AtomicInteger persisted = new AtomicInteger();
+        private volatile Throwable failure;
+
+        Job(String name, ProgressListener listener, BatchCheckpoints checkpoints,
+                int batchSize, boolean bulkLoad) {
+            this.name = name;
+            this.listener = listener;
+            this.checkpoints = checkpoints;
+            this.batchSize = batchSize;
+            this.bulkLoad = bulkLoad;
+        }
+
+        void reportProgress() {
+            try {
+                listener.onProgress(extracted.get(), embedded.get(), persisted.get());
+            } catch (Exception e) {
+                log.warn("Progress listener failed for {}", name, e);
+            }
+        }
+
+        boolean isFailed() {
+            return failure != null;
+        }
+
+        void fail(Throwable cause) {
+            if (failure == null) {
+                failure = cause;
+                log.error("Ingestion failed for {}", name, cause);
+            }
+        }
+
+        void batchDone() {
+            if (outstanding.decrementAndGet() > 0) {
+                return;
+            }
+            if (failure == null) {
+                done.complete(persisted.get());
+                return;
+            }
+            if (checkpoints != null) {
+                done.completeExceptionally(failure);
+                return;
+            }
+            // The purger removes the chunks; without a committed batch there
+            // is no pending tombstone and nothing to remove. If this fails the
+            // pending tombstones time out into the purger all the same
+            for (String documentId : hidden) {
+                try {
+                    transactionTemplate.executeWithoutResult(
+                            status -> tombstoneRepository.discardPending(documentId));
+                } catch (Exception e) {
+                    log.error("Failed to discard partial chunks of document {}", documentId, e);
+                }
+            }
+            done.completeExceptionally(failure);
+        }
+
+        int await() throws IOException {
+            try {
+                return done.get(awaitTimeoutMinutes, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+                throw new IOException("Interrupted while ingesting document", e);
+            } catch (TimeoutException e) {
+                // Batches still in flight are skipped and the job cleans up
+                // after the last of them
+                fail(e);
+                throw new IOException("Ingestion of " + name + " did not finish in "
+                        + awaitTimeoutMinutes + " minutes", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                while (cause instanceof IllegalStateException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException("Ingestion failed", cause);
+            }
+        }
+    }
+
+    private record Batch(Job job, List<TextChunk> chunks) {
+
+        Set<String> documentIds() {
+            Set<String> ids = new HashSet<>();
+            chunks.forEach(chunk -> ids.add(chunk.getDocumentId()));
+            return ids;
+        }
+    }
+
+    private static class StageStats {
+
+        private static final double RECENT_WEIGHT = 0.2;
+
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder chunks = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        // Updated without synchronisation; a lost update only skews the
+        // average slightly
+        private volatile double recentNanosPerChunk;
+
+        void record(int chunkCount, long nanos) {
+            batches.increment();
+            chunks.add(chunkCount);
+            busyNanos.add(nanos);
+            if (chunkCount > 0) {
+                double sample = (double) nanos / chunkCount;
+                double previous = recentNanosPerChunk;
+                recentNanosPerChunk = previous == 0 ? sample : previous + RECENT_WEIGHT * (sample - previous);
+            }
+        }
+
+        Map<String, Object> toMap(int queued) {
+            long chunkCount = chunks.sum();
+            long busy = busyNanos.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("batches", batches.sum());
+            map.put("chunks", chunkCount);
+            map.put("busyMillis", busy / 1_000_000);
+            map.put("chunksPerSecond", busy == 0 ? 0.0 : chunkCount * 1e9 / busy);
+            map.put("queued", queued);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.springai.rag;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the ingestion queue and runs claimed jobs on the
+ * {@link IngestionExecutor}, claiming only as many as it has free slots.
+ * Leases of running jobs are renewed on every heartbeat; on shutdown,
+ * running jobs get the grace period to drain and those that do not finish
+ * are released back to the queue.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestionWorker {
+
+    private static final int ABANDONED_BATCH_SIZE = 50;
+
+    private final IngestionJobQueue jobQueue;
+    private final BatchProcessingService batchProcessingService;
+    private final IngestionExecutor ingestionExecutor;
+    private final SpoolDirectoryCheck spoolDirectoryCheck;
+
+    @Value("${app.rag.ingestion.worker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rag.ingestion.shutdown-grace-seconds:30}")
+    private long shutdownGraceSeconds;
+
+    private final String workerId = hostName() + ":" + UUID.randomUUID();
+    private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopping;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            log.info("Ingestion worker {} polling", workerId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.poll-interval-ms:1000}")
+    public void poll() {
+        // A job's file may be unreadable here when the spool is not shared
+        if (!enabled || stopping || !spoolDirectoryCheck.isShared()) {
+            return;
+        }
+        while (ingestionExecutor.tryReserve()) {
+            Optional<IngestionJob> claimed;
+            try {
+                claimed = jobQueue.claim(workerId);
+            } catch (Exception e) {
+                ingestionExecutor.release();
+                log.error("Failed to claim ingestion job", e);
+                return;
+            }
+            if (claimed.isEmpty()) {
+                ingestionExecutor.release();
+                return;
+            }
+
+            IngestionJob job = claimed.get();
+            runningJobs.add(job.getId());
+            try {
+                ingestionExecutor.execute(() -> {
+                    try {
+                        batchProcessingService.processJob(job, workerId);
+                    } finally {
+                        runningJobs.remove(job.getId());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; another worker picks it up
+                runningJobs.remove(job.getId());
+                jobQueue.release(job.getId(), workerId);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fails jobs that lost their lease on their last attempt, which would
+     * otherwise stay RUNNING forever.
+     */
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.heartbeat-interval-ms:15000}")
+    public void failAbandoned() {
+        if (!enabled || stopping) {
+            return;
+        }
+        try {
+            for (IngestionJob job : jobQueue.failAbandoned(ABANDONED_BATCH_SIZE)) {
+                batchProcessingService.abandonJob(job);
+            }
+        } catch (Exception e) {
+            log.error("Failed to fail abandoned ingestion jobs", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        if (runningJobs.isEmpty()) {
+            return;
+        }
+        List<Long> jobIds = new ArrayList<>(runningJobs);
+        try {
+            int owned = jobQueue.renewLeases(jobIds, workerId);
+            if (owned < jobIds.size()) {
+                log.warn("Worker {} lost the lease on {} of {} running jobs",
+                        workerId, jobIds.size() - owned, jobIds.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to renew ingestion job leases", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        if (ingestionExecutor.drain(shutdownGraceSeconds)) {
+            return;
+        }
+        List<Long> unfinished = new ArrayList<>(runningJobs);
+        ingestionExecutor.shutdown();
+        for (Long jobId : unfinished) {
+            try {
+                jobQueue.release(jobId, workerId);
+                log.info("Released unfinished ingestion job {}", jobId);
+            } catch (Exception e) {
+                log.warn("Failed to release ingestion job {}, it is reclaimed when its lease expires", jobId, e);
+            }
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
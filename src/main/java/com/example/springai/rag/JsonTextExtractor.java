@@ -0,0 +1,74 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * JSON read token by token with Jackson's streaming parser. Every scalar
+ * becomes a {@code path: value} line, the path being the dotted field names
+ * leading to it. Elements of a top-level array are treated as records and
+ * separated by paragraph breaks, so chunks do not mix them unless they are
+ * small enough to share one.
+ */
+@Component
+public class JsonTextExtractor implements TextExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public Set<String> getExtensions() {
+        return Set.of("json");
+    }
+
+    @Override
+    public void extract(InputStream in, TextChunker chunker) throws IOException {
+        StringBuilder line = new StringBuilder();
+        Deque<String> path = new ArrayDeque<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                    line.setLength(0);
+                    appendPath(line, parser.getParsingContext(), path);
+                    if (line.length() > 0) {
+                        line.append(": ");
+                    }
+                    line.append(parser.getText()).append('\n');
+                    chunker.append(line);
+                } else if (token.isStructEnd() && isRecordEnd(parser.getParsingContext())) {
+                    chunker.append("\n\n");
+                }
+            }
+        }
+    }
+
+    private void appendPath(StringBuilder line, JsonStreamContext context, Deque<String> path) {
+        path.clear();
+        for (JsonStreamContext current = context; current != null; current = current.getParent()) {
+            if (current.inObject() && current.getCurrentName() != null) {
+                path.push(current.getCurrentName());
+            }
+        }
+        while (!path.isEmpty()) {
+            if (line.length() > 0) {
+                line.append('.');
+            }
+            line.append(path.pop());
+        }
+    }
+
+    // After a struct ends the parser is back in its parent
+    private boolean isRecordEnd(JsonStreamContext context) {
+        return context.inArray() && context.getParent() != null && context.getParent().inRoot();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Plain text and Markdown, read as UTF-8 in fixed-size pieces. Markdown
+ * markup is kept; blank lines between blocks become paragraph breaks.
+ */
+@Component
+public class PlainTextExtractor implements TextExtractor {
+
+    private static final int BUFFER_CHARS = 8192;
+
+    @Override
+    public Set<String> getExtensions() {
+        return Set.of("txt", "md");
+    }
+
+    @Override
+    public void extract(InputStream in, TextChunker chunker) throws IOException {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        char[] buffer = new char[BUFFER_CHARS];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            chunker.append(CharBuffer.wrap(buffer, 0, read));
+        }
+    }
+}
@@ -2,18 +2,24 @@ package com.example.springai.rag;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.OptimisticLockingFailureException;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.springai.exception.RagException;
 import com.example.springai.service.AiService;
 
 import lombok.RequiredArgsConstructor;
@@ -32,144 +38,373 @@ public class RagService {
     private final DocumentCollectionRepository collectionRepository;
     private final CacheService cacheService;
     private final FileTypeValidator fileTypeValidator;
-    private final BatchProcessingService batchProcessingService;
+    private final SemanticAnswerCache answerCache;
+    private final CacheInvalidationBus invalidationBus;
+    private final DocumentAccessTracker accessTracker;
+    private final IngestionPipeline ingestionPipeline;
+    private final DocumentLocks documentLocks;
+    private final DocumentTombstoneRepository tombstoneRepository;
+    private final ArchivedTextChunkRepository archivedChunkRepository;
+    private final TransactionTemplate transactionTemplate;
 
     private static final int SIMILAR_CHUNKS_LIMIT = 3;
-    private static final ReentrantLock versionLock = new ReentrantLock();
 
     @Autowired
     private AiService aiService;
 
-    @Transactional
-    @Retryable(value = OptimisticLockingFailureException.class,
-            maxAttempts = 3, backoff = @Backoff(delay = 1000))
-    public String processAndStoreDocument(MultipartFile file) throws IOException {
+    /**
+     * Runs the upload through the ingestion pipeline, which commits the
+     * chunks batch by batch while the document is hidden, then records the
+     * document metadata and reveals the document in one transaction. If that
+     * fails, the stored chunks are purged.
+     */
+    public String processAndStoreDocument(MultipartFile file, String collectionId, String userId)
+            throws IOException {
         // Validate file
         fileTypeValidator.validateFile(file);
 
         String documentId = java.util.UUID.randomUUID().toString();
-        List<TextChunk> chunks = documentProcessor.processDocument(file);
-
-        // Generate embeddings
-        embeddingService.generateEmbeddings(chunks);
-        chunks.forEach(chunk -> chunk.setDocumentId(documentId));
+        int chunkCount = ingestionPipeline.ingest(documentId, file, chunkingOptions(collectionId));
 
-        // Store chunks
-        textChunkRepository.saveAll(chunks);
-
-        // Create metadata
-        createDocumentMetadata(file, documentId, chunks.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                createDocumentMetadata(file, documentId, userId, chunkCount);
+                tombstoneRepository.revealDocument(documentId);
+            });
+        } catch (RuntimeException e) {
+            discardPending(documentId);
+            throw e;
+        }
+        invalidationBus.documentChanged(documentId, null);
 
         return documentId;
     }
 
+    /**
+     * Answers from the current chunks of all documents, or of one document
+     * version. Archived documents are only searched with
+     * {@code includeArchived}, which also scans the cold tier.
+     */
     @Transactional(readOnly = true)
-    public String queryDocument(String query, String modelName, Integer version) {
+    public String queryDocument(String query, String modelName, Integer version, boolean includeArchived) {
+        // Resolved first, so unknown versions are rejected before the cache
+        DocumentVersion docVersion = version != null
+                ? documentVersionRepository.findByDocumentIdAndVersionNumber(query.split(":")[0], version)
+                        .orElseThrow(() -> new IllegalArgumentException("Version not found"))
+                : null;
         float[] queryEmbedding = embeddingService.generateEmbedding(query);
+        String scope = docVersion != null
+                ? SemanticAnswerCache.versionScope(docVersion.getDocumentId(), version)
+                : SemanticAnswerCache.GLOBAL_SCOPE;
+        if (includeArchived) {
+            scope = SemanticAnswerCache.archivedScope(scope);
+        }
+        long generation = answerCache.generation(scope);
 
-        List<TextChunk> similarChunks;
-        if (version != null) {
-            DocumentVersion docVersion = documentVersionRepository
-                    .findByDocumentIdAndVersionNumber(query.split(":")[0], version)
-                    .orElseThrow(() -> new IllegalArgumentException("Version not found"));
+        String cachedAnswer = answerCache.get(scope, modelName, queryEmbedding);
+        if (cachedAnswer != null) {
+            return cachedAnswer;
+        }
 
-            similarChunks = textChunkRepository.findSimilarChunksForVersion(
-                    queryEmbedding, docVersion.getChunkStartId(),
-                    docVersion.getChunkEndId(), SIMILAR_CHUNKS_LIMIT);
+        List<ChunkReference> similarChunks;
+        if (docVersion != null) {
+            DocumentMetadata metadata = documentMetadataRepository.findById(docVersion.getDocumentId())
+                    .orElse(null);
+
+            if (metadata != null && metadata.isArchived()) {
+                if (!includeArchived) {
+                    throw new IllegalArgumentException("Document is archived, query it with includeArchived");
+                }
+                similarChunks = docVersion.getChunkStartId() != null
+                        ? archivedChunkRepository.findSimilarChunkRefsInRange(
+                                queryEmbedding, docVersion.getDocumentId(), docVersion.getChunkStartId(),
+                                docVersion.getChunkEndId(), SIMILAR_CHUNKS_LIMIT)
+                        : archivedChunkRepository.findSimilarChunkRefsForVersion(
+                                queryEmbedding, docVersion.getDocumentId(), version, SIMILAR_CHUNKS_LIMIT);
+            } else if (docVersion.getChunkStartId() != null) {
+                // Ids of concurrent uploads interleave in blocks, so the range
+                // alone does not identify the version's chunks
+                similarChunks = textChunkRepository.findSimilarChunkRefsInRange(
+                        queryEmbedding, docVersion.getDocumentId(), docVersion.getChunkStartId(),
+                        docVersion.getChunkEndId(), SIMILAR_CHUNKS_LIMIT);
+            } else {
+                similarChunks = textChunkRepository.findSimilarChunkRefsForVersion(
+                        queryEmbedding, docVersion.getDocumentId(), version, SIMILAR_CHUNKS_LIMIT);
+            }
+        } else if (includeArchived) {
+            similarChunks = textChunkRepository.findSimilarChunkRefsIncludingArchived(
+                    queryEmbedding, SIMILAR_CHUNKS_LIMIT);
         } else {
-            similarChunks = textChunkRepository.findSimilarChunks(
+            similarChunks = textChunkRepository.findSimilarChunkRefs(
                     queryEmbedding, SIMILAR_CHUNKS_LIMIT);
         }
 
         String context = prepareContext(similarChunks, query);
-        return aiService.executeModel(modelName, generatePrompt(context, query));
+        String answer = aiService.executeModel(modelName, generatePrompt(context, query));
+        answerCache.put(scope, generation, modelName, queryEmbedding, answer);
+        return answer;
     }
 
     @Transactional(readOnly = true)
-    public String queryCollection(String collectionId, String query, String modelName) {
+    public String queryCollection(String collectionId, String query, String modelName, boolean includeArchived) {
         DocumentCollection collection = collectionRepository.findById(collectionId)
                 .orElseThrow(() -> new IllegalArgumentException("Collection not found"));
 
+        String selectedModel = modelName != null ? modelName : collection.getDefaultAiModel();
         float[] queryEmbedding = embeddingService.generateEmbedding(query);
-        List<TextChunk> similarChunks = textChunkRepository
-                .findSimilarChunksInCollection(queryEmbedding, collectionId, SIMILAR_CHUNKS_LIMIT);
+        String scope = includeArchived ? SemanticAnswerCache.archivedScope(collectionId) : collectionId;
+        long generation = answerCache.generation(scope);
+
+        String cachedAnswer = answerCache.get(scope, selectedModel, queryEmbedding);
+        if (cachedAnswer != null) {
+            return cachedAnswer;
+        }
+
+        // Resolving the documents first lets the chunk search prune partitions
+        String[] documentIds = documentMetadataRepository.findDocumentIdsByCollectionId(collectionId)
+                .toArray(new String[0]);
+        List<ChunkReference> similarChunks;
+        if (documentIds.length == 0) {
+            similarChunks = new ArrayList<>();
+        } else if (includeArchived) {
+            similarChunks = textChunkRepository.findSimilarChunkRefsInDocumentsIncludingArchived(
+                    queryEmbedding, documentIds, SIMILAR_CHUNKS_LIMIT);
+        } else {
+            similarChunks = textChunkRepository.findSimilarChunkRefsInDocuments(
+                    queryEmbedding, documentIds, SIMILAR_CHUNKS_LIMIT);
+        }
 
         String context = prepareContext(similarChunks, query);
-        return aiService.executeModel(modelName != null ? modelName
-                : collection.getDefaultAiModel(), generatePrompt(context, query));
+        String answer = aiService.executeModel(selectedModel, generatePrompt(context, query));
+        answerCache.put(scope, generation, selectedModel, queryEmbedding, answer);
+        return answer;
     }
 
     @Transactional
+    public void addToCollection(String documentId, String collectionId, Set<String> tags) {
+        DocumentCollection collection = collectionRepository.findById(collectionId)
+                .orElseThrow(() -> new IllegalArgumentException("Collection not found"));
+        DocumentMetadata metadata = documentMetadataRepository.findById(documentId)
+                .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+        metadata.setCollectionId(collectionId);
+        metadata.setTags(tags != null ? tags : new HashSet<>());
+        documentMetadataRepository.save(metadata);
+
+        // Update collection stats
+        collection.setDocumentCount(collection.getDocumentCount() + 1);
+        collectionRepository.save(collection);
+
+        invalidationBus.documentChanged(documentId, collectionId);
+    }
+
+    /**
+     * Creates the next version of a document. Extraction and embedding run
+     * before the document is locked, against the chunks current at that
+     * point; only the diff against the current version, the version number
+     * and the writes are serialized per document.
+     */
     public DocumentVersion createNewVersion(String documentId, MultipartFile file,
             String description) throws IOException {
-        versionLock.lock();
-        try {
-            // Validate file
-            fileTypeValidator.validateFile(file);
-
-            // Get current version
-            Integer currentVersion = documentVersionRepository
-                    .findLatestVersionNumber(documentId)
-                    .orElse(0);
-
-            // Process new version
-            List<TextChunk> newChunks = documentProcessor.processDocument(file);
-            embeddingService.generateEmbeddings(newChunks);
-            newChunks.forEach(chunk -> chunk.setDocumentId(documentId));
-
-            // Save chunks and get IDs
-            List<TextChunk> savedChunks = textChunkRepository.saveAll(newChunks);
-            Long startId = savedChunks.get(0).getId();
-            Long endId = savedChunks.get(savedChunks.size() - 1).getId();
-
-            // Create version entry
-            DocumentVersion version = new DocumentVersion();
-            version.setDocumentId(documentId);
-            version.setVersionNumber(currentVersion + 1);
-            version.setCreatedAt(LocalDateTime.now());
-            version.setChunkStartId(startId);
-            version.setChunkEndId(endId);
-            version.setChangeDescription(description);
-            version.setStatus(DocumentVersion.ProcessingStatus.COMPLETED);
-
-            return documentVersionRepository.save(version);
-        } finally {
-            versionLock.unlock();
-        }
+        // Validate file
+        fileTypeValidator.validateFile(file);
+
+        // Process new version
+        String collectionId = documentMetadataRepository.findById(documentId)
+                .map(DocumentMetadata::getCollectionId)
+                .orElse(null);
+        List<TextChunk> newChunks = documentProcessor.processDocument(file, chunkingOptions(collectionId));
+        Set<String> currentHashes = new HashSet<>(textChunkRepository.findCurrentContentHashes(documentId));
+        embeddingService.generateEmbeddings(newChunks.stream()
+                .filter(chunk -> !currentHashes.contains(chunk.getContentHash()))
+                .collect(Collectors.toList()));
+
+        return documentLocks.withDocumentLock(documentId,
+                () -> storeNewVersion(documentId, newChunks, description));
     }
 
-    @Transactional
-    public void deleteDocument(String documentId, String userId) {
-        DocumentMetadata metadata = documentMetadataRepository.findById(documentId)
-                .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+    private DocumentVersion storeNewVersion(String documentId, List<TextChunk> newChunks, String description) {
+        if (tombstoneRepository.isDeleted(documentId)) {
+            throw new IllegalArgumentException("Document not found");
+        }
+        // Documents uploaded without a version row start at version 1
+        DocumentMetadata metadata = documentMetadataRepository.findById(documentId).orElse(null);
+        if (metadata != null && metadata.isArchived()) {
+            throw new IllegalArgumentException("Document is archived, restore it before adding versions");
+        }
+        int currentVersion = Math.max(
+                documentVersionRepository.findLatestVersionNumber(documentId).orElse(0),
+                metadata != null && metadata.getCurrentVersion() != null ? metadata.getCurrentVersion() : 0);
+        int newVersion = currentVersion + 1;
+        String collectionId = metadata != null ? metadata.getCollectionId() : null;
+
+        // Reuse chunks of the current version whose content is unchanged;
+        // identical chunks are matched one to one, in document order.
+        // Chunks stored before hashing was added are always replaced
+        Map<String, Deque<TextChunk>> currentChunks = new HashMap<>();
+        List<TextChunk> removedChunks = new ArrayList<>();
+        for (TextChunk chunk : textChunkRepository.findCurrentChunks(documentId)) {
+            if (chunk.getContentHash() != null) {
+                currentChunks.computeIfAbsent(chunk.getContentHash(), hash -> new ArrayDeque<>()).add(chunk);
+            } else {
+                removedChunks.add(chunk);
+            }
+        }
+        List<TextChunk> changedChunks = new ArrayList<>();
+        List<TextChunk> keptChunks = new ArrayList<>();
+        for (TextChunk chunk : newChunks) {
+            Deque<TextChunk> matches = currentChunks.get(chunk.getContentHash());
+            TextChunk existing = matches != null ? matches.poll() : null;
+            if (existing != null) {
+                // Ordinals follow the latest version the chunk is part of
+                existing.setChunkIndex(chunk.getChunkIndex());
+                keptChunks.add(existing);
+            } else {
+                chunk.setDocumentId(documentId);
+                chunk.setFirstVersion(newVersion);
+                changedChunks.add(chunk);
+            }
+        }
 
-        if (!metadata.getOwnerId().equals(userId)) {
-            throw new IllegalArgumentException("Not authorized to delete this document");
+        // Chunks left unmatched end with the previous version; they are
+        // managed, like the reused ones, and updated on commit
+        currentChunks.values().forEach(removedChunks::addAll);
+        removedChunks.forEach(chunk -> chunk.setLastVersion(currentVersion));
+
+        // Only new and modified chunks are stored. Chunks skipped before the
+        // lock because they matched a version replaced meanwhile are embedded
+        // now
+        List<TextChunk> unembedded = changedChunks.stream()
+                .filter(chunk -> chunk.getEmbedding() == null)
+                .collect(Collectors.toList());
+        if (!unembedded.isEmpty()) {
+            embeddingService.generateEmbeddings(unembedded);
+        }
+        textChunkRepository.saveAll(changedChunks);
+        documentVersionRepository.deactivateVersions(documentId);
+
+        // Create version entry
+        DocumentVersion version = new DocumentVersion();
+        version.setDocumentId(documentId);
+        version.setVersionNumber(newVersion);
+        version.setCreatedAt(LocalDateTime.now());
+        version.setChangeDescription(description);
+        version.setStatus(DocumentVersion.ProcessingStatus.COMPLETED);
+
+        if (metadata != null) {
+            metadata.setCurrentVersion(newVersion);
+            metadata.setChunkCount(newChunks.size());
+            documentMetadataRepository.save(metadata);
         }
+        log.info("Version {} of document {}: {} chunks reused, {} embedded, {} retired",
+                newVersion, documentId, keptChunks.size(), changedChunks.size(), removedChunks.size());
+
+        DocumentVersion saved = documentVersionRepository.save(version);
+        invalidationBus.documentChanged(documentId, collectionId);
+        return saved;
+    }
+
+    /**
+     * Moves the document's chunks, all versions included, to the cold tier.
+     * Returns the number of chunks moved.
+     */
+    public int archiveDocument(String documentId, String userId) {
+        return documentLocks.withDocumentLock(documentId, () -> {
+            DocumentMetadata metadata = ownedDocument(documentId, userId);
+            if (metadata.isArchived()) {
+                throw new IllegalArgumentException("Document is already archived");
+            }
+            int moved = archivedChunkRepository.archiveDocument(documentId);
+            metadata.setArchived(true);
+            documentMetadataRepository.save(metadata);
+            invalidationBus.documentChanged(documentId, metadata.getCollectionId());
+            log.info("Archived document {}: {} chunks moved to the cold tier", documentId, moved);
+            return moved;
+        });
+    }
 
-        // Update collection if needed
-        if (metadata.getCollectionId() != null) {
-            DocumentCollection collection = collectionRepository
-                    .findById(metadata.getCollectionId()).orElse(null);
-            if (collection != null) {
-                collection.setDocumentCount(collection.getDocumentCount() - 1);
-                collectionRepository.save(collection);
+    /**
+     * Moves an archived document's chunks back to the hot tier. Returns the
+     * number of chunks moved.
+     */
+    public int restoreDocument(String documentId, String userId) {
+        return documentLocks.withDocumentLock(documentId, () -> {
+            DocumentMetadata metadata = ownedDocument(documentId, userId);
+            if (!metadata.isArchived()) {
+                throw new IllegalArgumentException("Document is not archived");
             }
+            int moved = archivedChunkRepository.restoreDocument(documentId);
+            metadata.setArchived(false);
+            documentMetadataRepository.save(metadata);
+            invalidationBus.documentChanged(documentId, metadata.getCollectionId());
+            log.info("Restored document {}: {} chunks moved to the hot tier", documentId, moved);
+            return moved;
+        });
+    }
+
+    /**
+     * Deletes the document under its lock, so a concurrent new version
+     * cannot recreate what the tombstone hides.
+     */
+    public void deleteDocument(String documentId, String userId) {
+        documentLocks.withDocumentLock(documentId, () -> {
+            DocumentMetadata metadata = ownedDocument(documentId, userId);
+
+            // Update collection if needed
+            if (metadata.getCollectionId() != null) {
+                DocumentCollection collection = collectionRepository
+                        .findById(metadata.getCollectionId()).orElse(null);
+                if (collection != null) {
+                    collection.setDocumentCount(collection.getDocumentCount() - 1);
+                    collectionRepository.save(collection);
+                }
+            }
+
+            // Chunks are hidden by the tombstone and purged in the background
+            tombstoneRepository.save(new DocumentTombstone(documentId, LocalDateTime.now(), 0, false));
+            documentVersionRepository.deleteByDocumentId(documentId);
+            documentMetadataRepository.deleteById(documentId);
+
+            // Clear cache on every node
+            invalidationBus.documentChanged(documentId, metadata.getCollectionId());
+            return null;
+        });
+    }
+
+    private void discardPending(String documentId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> tombstoneRepository.discardPending(documentId));
+        } catch (Exception e) {
+            log.error("Failed to discard chunks of document {}", documentId, e);
         }
+    }
 
-        // Delete all related data
-        textChunkRepository.deleteByDocumentId(documentId);
-        documentVersionRepository.deleteByDocumentId(documentId);
-        documentMetadataRepository.deleteById(documentId);
+    /**
+     * Documents stored before owners were recorded have none and can be
+     * changed by no one.
+     */
+    private DocumentMetadata ownedDocument(String documentId, String userId) {
+        DocumentMetadata metadata = documentMetadataRepository.findById(documentId)
+                .orElseThrow(() -> new RagException("Document not found", RagException.ErrorCode.DOCUMENT_NOT_FOUND));
+        if (!Objects.equals(metadata.getOwnerId(), userId)) {
+            throw new RagException("Not authorized to modify this document",
+                    RagException.ErrorCode.UNAUTHORIZED_ACCESS);
+        }
+        return metadata;
+    }
 
-        // Clear cache
-        cacheService.evictDocument(documentId);
+    private ChunkingOptions chunkingOptions(String collectionId) {
+        DocumentCollection collection = collectionId != null
+                ? collectionRepository.findById(collectionId)
+                        .orElseThrow(() -> new IllegalArgumentException("Collection not found"))
+                : null;
+        return documentProcessor.chunkingOptions(collection);
     }
 
-    private void createDocumentMetadata(MultipartFile file, String documentId,
+    private void createDocumentMetadata(MultipartFile file, String documentId, String userId,
             int chunkCount) {
         DocumentMetadata metadata = new DocumentMetadata();
         metadata.setDocumentId(documentId);
+        metadata.setOwnerId(userId);
         metadata.setFileName(file.getOriginalFilename());
         metadata.setFileType(getFileExtension(file.getOriginalFilename()));
         metadata.setChunkCount(chunkCount);
@@ -184,10 +419,16 @@ public class RagService {
         return fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
     }
 
-    private String prepareContext(List<TextChunk> chunks, String query) {
-        return chunks.stream()
-                .map(TextChunk::getContent)
-                .collect(Collectors.joining("\n\n"));
+    private String prepareContext(List<ChunkReference> chunks, String query) {
+        chunks.stream()
+                .map(ChunkReference::getDocumentId)
+                .distinct()
+                .forEach(accessTracker::recordAccess);
+
+        List<Long> chunkIds = chunks.stream()
+                .map(ChunkReference::getId)
+                .collect(Collectors.toList());
+        return String.join("\n\n", cacheService.getChunkContents(chunkIds));
     }
 
     private String generatePrompt(String context, String query) {
@@ -0,0 +1,306 @@
+package com.example.springai.rag;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of final RAG answers keyed by query embedding. A question whose
+ * embedding is within the configured cosine similarity of a cached question,
+ * asked against the same model and the same scope generation, is answered
+ * from the cache instead of going through the AI model again.
+ *
+ * Scopes are collection ids, {@link #GLOBAL_SCOPE} for queries over all
+ * documents, or {@link #versionScope(String, Integer)} for pinned versions;
+ * {@link #archivedScope(String)} marks queries that include archived documents.
+ * Scopes, with their statistics, live in a bounded Caffeine cache and are
+ * only created when an answer is stored.
+ *
+ * Generations come from one counter bumped by every invalidation. A scope's
+ * last invalidation is remembered in a second bounded cache; an answer is
+ * only stored if its scope has not been invalidated since the generation it
+ * was computed at, so answers computed against old content are never stored
+ * into the new one. Forgotten invalidations count as recent ones.
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    public static final String GLOBAL_SCOPE = "_global";
+
+    @Value("${app.rag.answer-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rag.answer-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    @Value("${app.rag.answer-cache.max-entries-per-scope:500}")
+    private int maxEntriesPerScope;
+
+    @Value("${app.rag.answer-cache.max-scopes:1000}")
+    private int maxScopes;
+
+    @Value("${app.rag.answer-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    private Cache<String, Scope> scopes;
+    // Generation at which each scope was last invalidated
+    private Cache<String, Long> invalidations;
+    private final AtomicLong generation = new AtomicLong();
+    // Newest generation of an invalidation no longer remembered
+    private final AtomicLong forgottenGeneration = new AtomicLong();
+    private final LongAdder unscopedMisses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        scopes = Caffeine.newBuilder()
+                .maximumSize(maxScopes)
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes))
+                .build();
+        invalidations = Caffeine.newBuilder()
+                .maximumSize(maxScopes)
+                .executor(Runnable::run)
+                .removalListener((String scope, Long invalidated, RemovalCause cause) -> {
+                    if (cause.wasEvicted() && invalidated != null) {
+                        forgottenGeneration.accumulateAndGet(invalidated, Math::max);
+                    }
+                })
+                .build();
+    }
+
+    public static String versionScope(String documentId, Integer version) {
+        return "doc:" + documentId + "@v" + version;
+    }
+
+    public static String archivedScope(String scope) {
+        return scope + "+archived";
+    }
+
+    /**
+     * The generation to pass to {@link #put}; taken before retrieval. Does
+     * not create any state for the scope.
+     */
+    public long generation(String scope) {
+        return generation.get();
+    }
+
+    public String get(String scope, String modelName, float[] queryEmbedding) {
+        if (!enabled) {
+            return null;
+        }
+        Scope entries = scopes.getIfPresent(scope);
+        if (entries == null) {
+            unscopedMisses.increment();
+            return null;
+        }
+        String answer = entries.find(normalizeModel(modelName), normalize(queryEmbedding),
+                similarityThreshold, expiryCutoff());
+        if (answer != null) {
+            entries.hits.increment();
+            log.debug("Answer cache hit for scope: {}", scope);
+        } else {
+            entries.misses.increment();
+        }
+        return answer;
+    }
+
+    public void put(String scope, long generation, String modelName,
+            float[] queryEmbedding, String answer) {
+        if (!enabled || answer == null) {
+            return;
+        }
+        if (invalidatedSince(scope, generation)) {
+            log.debug("Skipping answer cache store for invalidated scope: {}", scope);
+            return;
+        }
+        Scope entries = scopes.get(scope, k -> new Scope(maxEntriesPerScope));
+        entries.add(new Entry(normalizeModel(modelName), normalize(queryEmbedding), answer));
+        // An invalidation racing with the store may have missed the new entry
+        if (invalidatedSince(scope, generation)) {
+            scopes.asMap().remove(scope, entries);
+        }
+    }
+
+    public void invalidate(String scope) {
+        if (scope == null) {
+            return;
+        }
+        invalidations.put(scope, generation.incrementAndGet());
+        scopes.invalidate(scope);
+        log.debug("Invalidated answer cache scope: {}", scope);
+    }
+
+    public void invalidateDocumentVersions(String documentId) {
+        String prefix = "doc:" + documentId + "@v";
+        scopes.asMap().keySet().stream()
+                .filter(scope -> scope.startsWith(prefix))
+                .forEach(this::invalidate);
+    }
+
+    public void invalidateAll() {
+        forgottenGeneration.accumulateAndGet(generation.incrementAndGet(), Math::max);
+        invalidations.invalidateAll();
+        scopes.invalidateAll();
+        log.debug("Invalidated all answer cache scopes");
+    }
+
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        if (event.isAll()) {
+            invalidateAll();
+            return;
+        }
+        if (!event.getDocumentIds().isEmpty()) {
+            invalidate(GLOBAL_SCOPE);
+            invalidate(archivedScope(GLOBAL_SCOPE));
+            event.getDocumentIds().forEach(this::invalidateDocumentVersions);
+        }
+        event.getCollectionIds().forEach(collectionId -> {
+            invalidate(collectionId);
+            invalidate(archivedScope(collectionId));
+        });
+    }
+
+    /**
+     * Hits and misses of the cached scopes; lookups in scopes without any
+     * cached answer are counted under {@code unscopedMisses}.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> scopeResults = new TreeMap<>();
+        scopes.asMap().forEach((scope, entries) -> {
+            long hits = entries.hits.sum();
+            long misses = entries.misses.sum();
+
+            Map<String, Object> scopeResult = new LinkedHashMap<>();
+            scopeResult.put("hits", hits);
+            scopeResult.put("misses", misses);
+            scopeResult.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+            scopeResult.put("entries", entries.size());
+            scopeResults.put(scope, scopeResult);
+        });
+        result.put("generation", generation.get());
+        result.put("unscopedMisses", unscopedMisses.sum());
+        result.put("scopes", scopeResults);
+        return result;
+    }
+
+    private boolean invalidatedSince(String scope, long generation) {
+        Long invalidated = invalidations.getIfPresent(scope);
+        return Math.max(invalidated != null ? invalidated : 0, forgottenGeneration.get()) > generation;
+    }
+
+    private long expiryCutoff() {
+        return System.currentTimeMillis() - ttlMinutes * 60_000L;
+    }
+
+    private static String normalizeModel(String modelName) {
+        return modelName == null ? "" : modelName.trim().toLowerCase();
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] unit = new float[vector.length];
+        if (norm == 0) {
+            return unit;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static class Scope {
+
+        private final LinkedHashMap<Long, Entry> entries;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private long nextId;
+
+        Scope(int maxEntries) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized String find(String model, float[] query, double threshold, long cutoff) {
+            Long bestId = null;
+            double bestScore = threshold;
+
+            Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Entry> candidate = it.next();
+                Entry entry = candidate.getValue();
+                if (entry.createdAt < cutoff) {
+                    it.remove();
+                    continue;
+                }
+                if (!entry.model.equals(model)) {
+                    continue;
+                }
+                double score = dot(entry.embedding, query);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    bestId = candidate.getKey();
+                }
+            }
+            // get() refreshes the LRU position of the matched entry
+            return bestId != null ? entries.get(bestId).answer : null;
+        }
+
+        synchronized void add(Entry entry) {
+            entries.put(nextId++, entry);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+
+        private final String model;
+        private final float[] embedding;
+        private final String answer;
+        private final long createdAt = System.currentTimeMillis();
+
+        Entry(String model, float[] embedding, String answer) {
+            this.model = model;
+            this.embedding = embedding;
+            this.answer = answer;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Verifies that the spool directory is the same storage on every node.
+ * Ingestion jobs are claimed cluster-wide and resumable upload parts arrive
+ * at any node, so every node reads and writes the same spooled files. Each
+ * node writes a probe file with a random token and records the token in
+ * {@code spool_probes}; a node that cannot read the probe of another live
+ * node does not share its spool directory.
+ *
+ * A failed check stops the node at startup. The check is repeated with
+ * every refresh, and while it fails the node claims no ingestion jobs.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SpoolDirectoryCheck {
+
+    private static final String PROBE_PREFIX = ".probe-";
+
+    private final SpoolProbeRepository probeRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.rag.ingestion.spool-dir:${java.io.tmpdir}/rag-spool}")
+    private String spoolDir;
+
+    @Value("${app.rag.ingestion.spool-check.enabled:true}")
+    private boolean enabled;
+
+    // Probes not refreshed for this long belong to nodes that are gone
+    @Value("${app.rag.ingestion.spool-check.stale-minutes:10}")
+    private long staleMinutes;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String token = UUID.randomUUID().toString();
+    private volatile boolean shared = true;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path directory = Path.of(spoolDir);
+        Files.createDirectories(directory);
+        Files.writeString(probePath(nodeId), token);
+        saveProbe();
+
+        List<String> unreadable = unreadableProbes();
+        if (!unreadable.isEmpty()) {
+            throw new IllegalStateException("Spool directory " + directory.toAbsolutePath()
+                    + " does not hold the probes of nodes " + unreadable
+                    + "; app.rag.ingestion.spool-dir must be storage that every node mounts");
+        }
+        log.info("Spool directory {} checked as node {}", directory.toAbsolutePath(), nodeId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.spool-check.interval-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            saveProbe();
+            transactionTemplate.executeWithoutResult(status ->
+                    probeRepository.deleteStale(probeRepository.databaseNow().minusMinutes(staleMinutes)));
+
+            List<String> unreadable = unreadableProbes();
+            if (!unreadable.isEmpty()) {
+                log.error("Spool directory {} does not hold the probes of nodes {}, not claiming ingestion jobs",
+                        spoolDir, unreadable);
+            } else if (!shared) {
+                log.info("Spool directory {} holds every node's probe again", spoolDir);
+            }
+            shared = unreadable.isEmpty();
+        } catch (Exception e) {
+            log.warn("Failed to refresh the spool directory probe", e);
+        }
+    }
+
+    /**
+     * Whether every live node's probe was readable at the last check.
+     */
+    public boolean isShared() {
+        return !enabled || shared;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            probeRepository.deleteById(nodeId);
+            Files.deleteIfExists(probePath(nodeId));
+        } catch (Exception e) {
+            log.warn("Failed to remove the spool directory probe of node {}", nodeId, e);
+        }
+    }
+
+    private void saveProbe() {
+        probeRepository.save(new SpoolProbe(nodeId, token, probeRepository.databaseNow()));
+    }
+
+    private List<String> unreadableProbes() {
+        LocalDateTime since = probeRepository.databaseNow().minusMinutes(staleMinutes);
+        List<String> unreadable = new ArrayList<>();
+        for (SpoolProbe probe : probeRepository.findByRefreshedAtAfter(since)) {
+            if (!probe.getToken().equals(readProbe(probe.getNodeId()))) {
+                unreadable.add(probe.getNodeId());
+            }
+        }
+        return unreadable;
+    }
+
+    private String readProbe(String node) {
+        try {
+            return Files.readString(probePath(node));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Path probePath(String node) {
+        return Path.of(spoolDir).resolve(PROBE_PREFIX + node);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.springai.rag;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * A node's probe file in the spool directory. Every other node must be able
+ * to read the file with the same token, or their spool directories are not
+ * the same storage.
+ */
+@Data
+@Entity
+@Table(name = "spool_probes")
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpoolProbe {
+
+    @Id
+    @Column(name = "node_id")
+    private String nodeId;
+
+    @Column(name = "token", nullable = false)
+    private String token;
+
+    @Column(name = "refreshed_at", nullable = false)
+    private LocalDateTime refreshedAt;
+}
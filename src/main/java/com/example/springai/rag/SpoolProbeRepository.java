@@ -0,0 +1,23 @@
+package com.example.springai.rag;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SpoolProbeRepository extends JpaRepository<SpoolProbe, String> {
+
+    @Query(value = "SELECT LOCALTIMESTAMP", nativeQuery = true)
+    LocalDateTime databaseNow();
+
+    List<SpoolProbe> findByRefreshedAtAfter(LocalDateTime after);
+
+    @Modifying
+    @Query("DELETE FROM SpoolProbe p WHERE p.refreshedAt < :before")
+    int deleteStale(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,53 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An upload copied to the spool directory, which outlives the request and
+ * is deleted once ingestion is finished.
+ */
+@Slf4j
+@Getter
+@RequiredArgsConstructor
+public class SpooledDocument implements DocumentSource {
+
+    private final Path path;
+    private final String filename;
+    private final String contentType;
+    private final long size;
+
+    public static SpooledDocument spool(MultipartFile file, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path path = Files.createTempFile(directory, "upload-", ".bin");
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new SpooledDocument(path, file.getOriginalFilename(), file.getContentType(), file.getSize());
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    public void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete spooled upload {}", path, e);
+        }
+    }
+}
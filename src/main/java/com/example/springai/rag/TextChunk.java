@@ -1,5 +1,10 @@
 package com.example.springai.rag;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -7,13 +12,19 @@ import lombok.AllArgsConstructor;
 
 @Data
 @Entity
-@Table(name = "text_chunks")
+@Table(name = "text_chunks", indexes = {
+    @Index(name = "idx_text_chunks_document_chunk", columnList = "document_id, chunk_index"),
+    @Index(name = "idx_text_chunks_document_versions", columnList = "document_id, last_version")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class TextChunk {
 
+    // Pooled sequence, so inserts can be batched; Hibernate reserves 50 ids
+    // per sequence call
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "text_chunks_seq")
+    @SequenceGenerator(name = "text_chunks_seq", sequenceName = "text_chunks_seq", allocationSize = 50)
     private Long id;
 
     @Column(columnDefinition = "TEXT")
@@ -25,7 +36,38 @@ public class TextChunk {
     @Column(name = "document_id")
     private String documentId;
 
+    // Ordinal of the chunk within its document
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+
+    // SHA-256 of the content, used to reuse unchanged chunks across versions
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Versions of the document the chunk belongs to; last_version stays null
+    // while the chunk is part of the current version
+    @Column(name = "first_version")
+    private Integer firstVersion = 1;
+
+    @Column(name = "last_version")
+    private Integer lastVersion;
+
     public TextChunk(String content) {
         this.content = content;
+        this.contentHash = hash(content);
+    }
+
+    public TextChunk(String content, int chunkIndex) {
+        this(content);
+        this.chunkIndex = chunkIndex;
+    }
+
+    public static String hash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
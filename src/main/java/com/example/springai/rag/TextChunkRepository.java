@@ -1,5 +1,6 @@
 package com.example.springai.rag;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -11,30 +12,123 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface TextChunkRepository extends JpaRepository<TextChunk, Long> {
 
+    // Searches across documents skip those deleted but not yet purged.
+    // text_chunks is hash-partitioned on document_id; searches over a list of
+    // documents only scan the partitions holding them
+
     List<TextChunk> findByDocumentId(String documentId);
 
-    @Query(value = "SELECT * FROM text_chunks "
+    // Chunks of the document's current version
+    @Query("SELECT t FROM TextChunk t WHERE t.documentId = :documentId AND t.lastVersion IS NULL "
+            + "ORDER BY t.chunkIndex")
+    List<TextChunk> findCurrentChunks(@Param("documentId") String documentId);
+
+    @Query("SELECT t.contentHash FROM TextChunk t WHERE t.documentId = :documentId "
+            + "AND t.lastVersion IS NULL AND t.contentHash IS NOT NULL")
+    List<String> findCurrentContentHashes(@Param("documentId") String documentId);
+
+    @Query("SELECT t.id, t.content FROM TextChunk t WHERE t.documentId = :documentId AND t.lastVersion IS NULL")
+    List<Object[]> findCurrentContents(@Param("documentId") String documentId);
+
+    @Query(value = "SELECT * FROM text_chunks WHERE last_version IS NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM document_tombstones d WHERE d.document_id = text_chunks.document_id) "
             + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) "
             + "LIMIT :limit", nativeQuery = true)
     List<TextChunk> findSimilarChunks(
             @Param("queryEmbedding") float[] queryEmbedding,
             @Param("limit") int limit);
 
-    @Query(value = "SELECT * FROM text_chunks WHERE document_id IN "
-            + "(SELECT document_id FROM document_collections WHERE collection_id = :collectionId) "
+    @Query(value = "SELECT * FROM text_chunks WHERE last_version IS NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM document_tombstones d WHERE d.document_id = text_chunks.document_id) "
+            + "AND document_id = ANY(CAST(:documentIds AS varchar[])) "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) "
+            + "LIMIT :limit", nativeQuery = true)
+    List<TextChunk> findSimilarChunksInDocuments(
+            @Param("queryEmbedding") float[] queryEmbedding,
+            @Param("documentIds") String[] documentIds,
+            @Param("limit") int limit);
+
+    @Query(value = "SELECT id, document_id AS \"documentId\" FROM text_chunks WHERE last_version IS NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM document_tombstones d WHERE d.document_id = text_chunks.document_id) "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) "
+            + "LIMIT :limit", nativeQuery = true)
+    List<ChunkReference> findSimilarChunkRefs(
+            @Param("queryEmbedding") float[] queryEmbedding,
+            @Param("limit") int limit);
+
+    @Query(value = "SELECT id, document_id AS \"documentId\" FROM text_chunks WHERE last_version IS NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM document_tombstones d WHERE d.document_id = text_chunks.document_id) "
+            + "AND document_id = ANY(CAST(:documentIds AS varchar[])) "
             + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) "
             + "LIMIT :limit", nativeQuery = true)
-    List<TextChunk> findSimilarChunksInCollection(
+    List<ChunkReference> findSimilarChunkRefsInDocuments(
             @Param("queryEmbedding") float[] queryEmbedding,
-            @Param("collectionId") String collectionId,
+            @Param("documentIds") String[] documentIds,
             @Param("limit") int limit);
 
-    List<TextChunk> findSimilarChunksForVersion(
+    // Hot and archived chunks: each tier yields its own nearest candidates,
+    // the hot one through the vector index, and the best of both are kept
+    @Query(value = "SELECT id, document_id AS \"documentId\" FROM ("
+            + "(SELECT id, document_id, embedding <-> CAST(:queryEmbedding AS float[]) AS distance "
+            + "FROM text_chunks WHERE last_version IS NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM document_tombstones d WHERE d.document_id = text_chunks.document_id) "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) LIMIT :limit) "
+            + "UNION ALL "
+            + "(SELECT id, document_id, embedding <-> CAST(:queryEmbedding AS float[]) AS distance "
+            + "FROM text_chunks_archive WHERE last_version IS NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM document_tombstones d WHERE d.document_id = text_chunks_archive.document_id) "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) LIMIT :limit)"
+            + ") candidates ORDER BY distance LIMIT :limit", nativeQuery = true)
+    List<ChunkReference> findSimilarChunkRefsIncludingArchived(
             @Param("queryEmbedding") float[] queryEmbedding,
+            @Param("limit") int limit);
+
+    @Query(value = "SELECT id, document_id AS \"documentId\" FROM ("
+            + "(SELECT id, document_id, embedding <-> CAST(:queryEmbedding AS float[]) AS distance "
+            + "FROM text_chunks WHERE last_version IS NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM document_tombstones d WHERE d.document_id = text_chunks.document_id) "
+            + "AND document_id = ANY(CAST(:documentIds AS varchar[])) "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) LIMIT :limit) "
+            + "UNION ALL "
+            + "(SELECT id, document_id, embedding <-> CAST(:queryEmbedding AS float[]) AS distance "
+            + "FROM text_chunks_archive WHERE last_version IS NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM document_tombstones d WHERE d.document_id = text_chunks_archive.document_id) "
+            + "AND document_id = ANY(CAST(:documentIds AS varchar[])) "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) LIMIT :limit)"
+            + ") candidates ORDER BY distance LIMIT :limit", nativeQuery = true)
+    List<ChunkReference> findSimilarChunkRefsInDocumentsIncludingArchived(
+            @Param("queryEmbedding") float[] queryEmbedding,
+            @Param("documentIds") String[] documentIds,
+            @Param("limit") int limit);
+
+    // Chunks created before versions were tracked per chunk default to the
+    // first version
+    @Query(value = "SELECT id, document_id AS \"documentId\" FROM text_chunks "
+            + "WHERE document_id = :documentId AND COALESCE(first_version, 1) <= :version "
+            + "AND (last_version IS NULL OR last_version >= :version) "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) "
+            + "LIMIT :limit", nativeQuery = true)
+    List<ChunkReference> findSimilarChunkRefsForVersion(
+            @Param("queryEmbedding") float[] queryEmbedding,
+            @Param("documentId") String documentId,
+            @Param("version") int version,
+            @Param("limit") int limit);
+
+    // Versions stored as a full copy of the document's chunks
+    @Query(value = "SELECT id, document_id AS \"documentId\" FROM text_chunks "
+            + "WHERE document_id = :documentId AND id BETWEEN :chunkStartId AND :chunkEndId "
+            + "ORDER BY embedding <-> CAST(:queryEmbedding AS float[]) "
+            + "LIMIT :limit", nativeQuery = true)
+    List<ChunkReference> findSimilarChunkRefsInRange(
+            @Param("queryEmbedding") float[] queryEmbedding,
+            @Param("documentId") String documentId,
             @Param("chunkStartId") Long chunkStartId,
             @Param("chunkEndId") Long chunkEndId,
             @Param("limit") int limit);
 
+    @Query("SELECT t.id, t.content FROM TextChunk t WHERE t.id IN :ids")
+    List<Object[]> findContentsByIds(@Param("ids") Collection<Long> ids);
+
     @Modifying
     @Query("DELETE FROM TextChunk t WHERE t.documentId = :documentId")
     void deleteByDocumentId(@Param("documentId") String documentId);
@@ -0,0 +1,266 @@
+package com.example.springai.rag;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental chunker. Text is appended in pieces as it is extracted and
+ * scanned once, character by character, into the current chunk. Runs of
+ * blank lines become paragraph breaks and other whitespace is kept as is.
+ *
+ * A chunk is cut as soon as the next character would exceed either the
+ * character limit or the estimated token limit of the embedding model. The
+ * cut goes at the last paragraph break ({@code PARAGRAPH} strategy) or the
+ * last word break, and the tail of the emitted chunk is carried into the
+ * next one as overlap. Only the current chunk is kept in memory.
+ *
+ * Han, kana and hangul characters are not grouped into words: the
+ * tokenizer splits them one by one, so each counts as a token and a word
+ * break may go before any of them.
+ */
+public class TextChunker {
+
+    // [CLS] and [SEP] count against the model's sequence length
+    private static final int RESERVED_TOKENS = 2;
+
+    private final Consumer<TextChunk> sink;
+    private final DocumentCollection.ChunkingStrategy strategy;
+    private final int maxChars;
+    private final int maxTokens;
+    private final int overlapChars;
+
+    private final StringBuilder chunk = new StringBuilder();
+    private final StringBuilder gap = new StringBuilder();
+    private int gapNewlines;
+
+    // Estimated tokens of the completed words in the chunk, and the length
+    // of the word currently being scanned
+    private int tokens;
+    private int wordLength;
+
+    // Last cut candidates: end of the text before the break, start of the
+    // text after it, and the token count at that point
+    private int paragraphCut = -1;
+    private int paragraphResume;
+    private int paragraphTokens;
+    private int wordCut = -1;
+    private int wordResume;
+    private int wordTokens;
+
+    // Length of the overlap carried over from the previous chunk
+    private int carriedLength;
+    private int chunkCount;
+
+    public TextChunker(Consumer<TextChunk> sink, ChunkingOptions options) {
+        this.sink = sink;
+        this.strategy = options.strategy();
+        this.maxChars = Math.max(1, options.chunkSize());
+        this.maxTokens = options.maxTokens() > 0
+                ? Math.max(1, options.maxTokens() - RESERVED_TOKENS)
+                : Integer.MAX_VALUE;
+        this.overlapChars = Math.max(0, Math.min(options.chunkOverlap(), maxChars / 2));
+    }
+
+    public void append(CharSequence text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                endWord();
+                gap.append(c);
+                if (c == '\n') {
+                    gapNewlines++;
+                }
+            } else {
+                appendVisible(c);
+            }
+        }
+    }
+
+    public void finish() {
+        endWord();
+        gap.setLength(0);
+        gapNewlines = 0;
+        if (chunk.length() > carriedLength) {
+            emit(chunk.length());
+        }
+        chunk.setLength(0);
+        carriedLength = 0;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    private void appendVisible(char c) {
+        if (gap.length() > 0) {
+            flushGap();
+        }
+
+        boolean wordChar = isWordChar(c);
+        if (!wordChar && isCjk(c)) {
+            endWord();
+            if (chunk.length() > carriedLength) {
+                wordCut = chunk.length();
+                wordResume = wordCut;
+                wordTokens = tokens;
+            }
+        }
+        // Each cut shrinks the chunk; several may be needed when the carried
+        // overlap pushes the remainder over the limits again
+        while (chunk.length() > 0 && overflows(wordChar)) {
+            cut();
+        }
+
+        chunk.append(c);
+        if (wordChar) {
+            wordLength++;
+        } else {
+            endWord();
+            tokens++;
+        }
+    }
+
+    private boolean overflows(boolean wordChar) {
+        int projectedTokens = wordChar
+                ? tokens + estimateTokens(wordLength + 1)
+                : tokens + estimateTokens(wordLength) + 1;
+        return chunk.length() + 1 > maxChars || projectedTokens > maxTokens;
+    }
+
+    /**
+     * Appends the pending whitespace run, normalising blank lines to a
+     * paragraph break. Leading whitespace of a chunk is dropped.
+     */
+    private void flushGap() {
+        if (chunk.length() > carriedLength) {
+            int breakAt = chunk.length();
+            if (gapNewlines >= 2) {
+                chunk.append("\n\n");
+                paragraphCut = breakAt;
+                paragraphResume = chunk.length();
+                paragraphTokens = tokens;
+            } else {
+                chunk.append(gap);
+            }
+            wordCut = breakAt;
+            wordResume = chunk.length();
+            wordTokens = tokens;
+        }
+        gap.setLength(0);
+        gapNewlines = 0;
+    }
+
+    private void cut() {
+        int cut;
+        int resume;
+        int tokensAtCut;
+        if (strategy == DocumentCollection.ChunkingStrategy.PARAGRAPH && paragraphCut > 0) {
+            cut = paragraphCut;
+            resume = paragraphResume;
+            tokensAtCut = paragraphTokens;
+        } else if (wordCut > 0) {
+            cut = wordCut;
+            resume = wordResume;
+            tokensAtCut = wordTokens;
+        } else {
+            // No break in the whole chunk, split the word
+            if (chunk.length() > carriedLength) {
+                emit(chunk.length());
+            }
+            chunk.setLength(0);
+            carriedLength = 0;
+            tokens = 0;
+            wordLength = 0;
+            paragraphCut = -1;
+            wordCut = -1;
+            return;
+        }
+
+        emit(cut);
+
+        // The overlap, the original break and the remainder are contiguous,
+        // so dropping the head of the buffer leaves the next chunk in place
+        int overlapStart = overlapStart(cut);
+        int overlapTokens = overlapStart < cut ? countTokens(overlapStart, cut) : 0;
+        int dropped = overlapStart < cut ? overlapStart : resume;
+        int shift = -dropped;
+        chunk.delete(0, dropped);
+
+        if (paragraphCut > cut) {
+            paragraphCut += shift;
+            paragraphResume += shift;
+            paragraphTokens = paragraphTokens - tokensAtCut + overlapTokens;
+        } else {
+            paragraphCut = -1;
+        }
+        if (wordCut > cut) {
+            wordCut += shift;
+            wordResume += shift;
+            wordTokens = wordTokens - tokensAtCut + overlapTokens;
+        } else {
+            wordCut = -1;
+        }
+        tokens = tokens - tokensAtCut + overlapTokens;
+        carriedLength = resume - dropped;
+    }
+
+    /**
+     * Start of the overlap carried into the next chunk: the first word that
+     * begins within the last {@code overlapChars} characters before the cut.
+     */
+    private int overlapStart(int cut) {
+        for (int i = Math.max(1, cut - overlapChars); i < cut; i++) {
+            if (!Character.isWhitespace(chunk.charAt(i)) && Character.isWhitespace(chunk.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return cut;
+    }
+
+    private int countTokens(int from, int to) {
+        int count = 0;
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = chunk.charAt(i);
+            if (isWordChar(c)) {
+                length++;
+            } else {
+                count += estimateTokens(length);
+                length = 0;
+                if (!Character.isWhitespace(c)) {
+                    count++;
+                }
+            }
+        }
+        return count + estimateTokens(length);
+    }
+
+    private void endWord() {
+        tokens += estimateTokens(wordLength);
+        wordLength = 0;
+    }
+
+    private void emit(int end) {
+        sink.accept(new TextChunk(chunk.substring(0, end), chunkCount++));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) && !isCjk(c);
+    }
+
+    private static boolean isCjk(char c) {
+        if (c < '\u2E80') {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * Word-piece estimate for a run of letters and digits: common words are
+     * a single piece, longer ones split roughly every six characters.
+     */
+    private static int estimateTokens(int wordLength) {
+        return wordLength == 0 ? 0 : (wordLength + 5) / 6;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * Streaming extractor for one family of text formats. The upload is read
+ * once and its text handed to the chunker as it is parsed, so memory use
+ * does not grow with the size of the file.
+ */
+public interface TextExtractor {
+
+    /**
+     * Lower-case file extensions handled by this extractor.
+     */
+    Set<String> getExtensions();
+
+    void extract(InputStream in, TextChunker chunker) throws IOException;
+}
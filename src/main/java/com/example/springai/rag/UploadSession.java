@@ -0,0 +1,87 @@
+package com.example.springai.rag;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Resumable upload in progress. Parts are appended to the spool file in
+ * order; {@code receivedBytes} is the durable offset the next part has to
+ * start at, so an interrupted client resumes from there.
+ */
+@Data
+@Entity
+@Table(name = "upload_sessions", indexes = {
+    @Index(name = "idx_upload_sessions_status", columnList = "status, updated_at")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    private String id;
+
+    @Column(name = "owner_id", nullable = false)
+    private String ownerId;
+
+    @Column(name = "collection_id")
+    private String collectionId;
+
+    // Comma separated
+    @Column(name = "tags", columnDefinition = "TEXT")
+    private String tags;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    @Column(name = "received_bytes", nullable = false)
+    private long receivedBytes;
+
+    // Expected SHA-256 of the whole file, hex encoded
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "spool_path", nullable = false, columnDefinition = "TEXT")
+    private String spoolPath;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Status status = Status.OPEN;
+
+    // Version created for the document once the upload completed
+    @Column(name = "version_id")
+    private Long versionId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum Status {
+        OPEN,
+        // Checksum being verified; parts and aborts are refused
+        COMPLETING,
+        COMPLETED,
+        ABORTED
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.springai.rag;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /**
+     * Moves the offset forward if it is still where the part started and the
+     * session is in the given status, so a concurrent writer on another node
+     * cannot rewind it.
+     */
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.receivedBytes = :receivedBytes, s.updatedAt = :now "
+            + "WHERE s.id = :id AND s.receivedBytes = :offset AND s.status = :status")
+    int advanceOffset(@Param("id") String id, @Param("offset") long offset,
+            @Param("receivedBytes") long receivedBytes, @Param("now") LocalDateTime now,
+            @Param("status") UploadSession.Status status);
+
+    /**
+     * Moves the session from one status to another if it is still in the
+     * first, so that of two concurrent requests only one proceeds.
+     */
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.status = :to, s.updatedAt = :now WHERE s.id = :id AND s.status = :from")
+    int transition(@Param("id") String id, @Param("from") UploadSession.Status from,
+            @Param("to") UploadSession.Status to, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.status = :to, s.versionId = :versionId, s.updatedAt = :now "
+            + "WHERE s.id = :id AND s.status = :from")
+    int transitionWithVersion(@Param("id") String id, @Param("from") UploadSession.Status from,
+            @Param("to") UploadSession.Status to, @Param("versionId") Long versionId,
+            @Param("now") LocalDateTime now);
+
+    List<UploadSession> findByStatusInAndUpdatedAtBefore(Collection<UploadSession.Status> statuses,
+            LocalDateTime before);
+}
@@ -0,0 +1,301 @@
+package com.example.springai.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resumable uploads for files too large for a single multipart request.
+ * The client announces the file, then sends it in parts of any size, each
+ * starting at the session's current offset; the bytes go straight from the
+ * request to the spool file. After a dropped connection the client asks for
+ * the offset and continues from there. Completing the session verifies the
+ * SHA-256 of the whole file and queues it for ingestion, which reads it from
+ * the spool directory as a stream.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadSessionService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository sessionRepository;
+    private final FileTypeValidator fileTypeValidator;
+    private final BatchProcessingService batchProcessingService;
+    private final TransactionTemplate transactionTemplate;
+    private final DocumentVersionRepository versionRepository;
+
+    @Value("${app.rag.ingestion.spool-dir:${java.io.tmpdir}/rag-spool}")
+    private String spoolDir;
+
+    @Value("${app.rag.upload.max-size-mb:10240}")
+    private long maxSizeMb;
+
+    @Value("${app.rag.upload.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    // Sessions with a part being written on this node
+    private final Set<String> writing = ConcurrentHashMap.newKeySet();
+
+    public UploadSession create(String fileName, String contentType, long size, String sha256,
+            String userId, String collectionId, Set<String> tags) throws IOException {
+        fileTypeValidator.validate(fileName, contentType, size, maxSizeMb * 1024 * 1024);
+        if (sha256 != null && !sha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("Invalid SHA-256 checksum");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path directory = Path.of(spoolDir);
+        Files.createDirectories(directory);
+        Path path = Files.createFile(directory.resolve("upload-" + id + ".part"));
+
+        UploadSession session = new UploadSession();
+        session.setId(id);
+        session.setOwnerId(userId);
+        session.setCollectionId(collectionId);
+        session.setTags(tags != null && !tags.isEmpty() ? String.join(",", tags) : null);
+        session.setFileName(fileName);
+        session.setContentType(contentType);
+        session.setTotalSize(size);
+        session.setSha256(sha256 != null ? sha256.toLowerCase() : null);
+        session.setSpoolPath(path.toString());
+        try {
+            return sessionRepository.save(session);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    public UploadSession get(String sessionId, String userId) {
+        UploadSession session = sessionRepository.findById(sessionId)
+                .orElseThrow(() -> new IllegalArgumentException("Upload not found"));
+        if (!session.getOwnerId().equals(userId)) {
+            throw new IllegalArgumentException("Not authorized to access this upload");
+        }
+        return session;
+    }
+
+    /**
+     * Appends a part starting at {@code offset}, which must be the session's
+     * current offset. Bytes beyond the recorded offset, left by an earlier
+     * interrupted part, are overwritten. If the request breaks off, what was
+     * received is kept and recorded before the error is rethrown. Returns the
+     * new offset.
+     */
+    public long appendPart(String sessionId, String userId, long offset, InputStream body) throws IOException {
+        UploadSession session = get(sessionId, userId);
+        if (session.getStatus() != UploadSession.Status.OPEN) {
+            throw new IllegalStateException("Upload is " + session.getStatus());
+        }
+        if (offset != session.getReceivedBytes()) {
+            throw new IllegalStateException("Expected offset " + session.getReceivedBytes());
+        }
+        if (!writing.add(sessionId)) {
+            throw new IllegalStateException("Another part of this upload is being written");
+        }
+
+        long position = offset;
+        try (FileChannel channel = FileChannel.open(Path.of(session.getSpoolPath()), StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            try {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    if (position + read > session.getTotalSize()) {
+                        throw new IllegalArgumentException("Part exceeds the announced size of "
+                                + session.getTotalSize() + " bytes");
+                    }
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                    while (bytes.hasRemaining()) {
+                        position += channel.write(bytes, position);
+                    }
+                }
+            } finally {
+                // The recorded offset must never run ahead of what is on disk
+                channel.force(false);
+                recordOffset(session, offset, position);
+            }
+        } finally {
+            writing.remove(sessionId);
+        }
+        return position;
+    }
+
+    /**
+     * Verifies the received file against the SHA-256 given here or when the
+     * session was created and hands it to the ingestion queue. A mismatch
+     * aborts the session, since the received bytes cannot be trusted.
+     *
+     * The session moves to {@code COMPLETING} before the file is hashed, so
+     * concurrent or repeated calls, part uploads and the stale-upload
+     * cleanup cannot act on it meanwhile. A call repeated after the session
+     * completed, such as a client retrying after a timeout, returns the job
+     * already queued instead of queuing a second one.
+     */
+    public DocumentVersion complete(String sessionId, String userId, String sha256) throws IOException {
+        UploadSession session = get(sessionId, userId);
+        if (session.getStatus() == UploadSession.Status.COMPLETED && session.getVersionId() != null) {
+            return versionRepository.findById(session.getVersionId())
+                    .orElseThrow(() -> new IllegalStateException("Upload is " + session.getStatus()));
+        }
+        if (session.getStatus() != UploadSession.Status.OPEN) {
+            throw new IllegalStateException("Upload is " + session.getStatus());
+        }
+        if (session.getReceivedBytes() != session.getTotalSize()) {
+            throw new IllegalStateException("Received " + session.getReceivedBytes()
+                    + " of " + session.getTotalSize() + " bytes");
+        }
+        String expected = sha256 != null ? sha256.toLowerCase() : session.getSha256();
+        if (expected == null) {
+            throw new IllegalArgumentException("SHA-256 checksum is required");
+        }
+        if (!transition(session, UploadSession.Status.OPEN, UploadSession.Status.COMPLETING)) {
+            throw new IllegalStateException("Upload was changed concurrently");
+        }
+
+        Path path = Path.of(session.getSpoolPath());
+        String actual;
+        try {
+            actual = sha256Of(path);
+        } catch (IOException | RuntimeException e) {
+            // Nothing was decided, the client may try again
+            transition(session, UploadSession.Status.COMPLETING, UploadSession.Status.OPEN);
+            throw e;
+        }
+        if (!actual.equals(expected)) {
+            abort(session, UploadSession.Status.COMPLETING);
+            throw new IllegalArgumentException("Checksum mismatch: expected " + expected + ", got " + actual);
+        }
+
+        SpooledDocument source = new SpooledDocument(path, session.getFileName(),
+                session.getContentType(), session.getTotalSize());
+        DocumentVersion version;
+        try {
+            version = transactionTemplate.execute(status -> {
+                DocumentVersion accepted = batchProcessingService.acceptSpooledDocument(
+                        source, userId, session.getCollectionId(), parseTags(session.getTags()));
+                if (sessionRepository.transitionWithVersion(session.getId(), UploadSession.Status.COMPLETING,
+                        UploadSession.Status.COMPLETED, accepted.getId(), LocalDateTime.now()) == 0) {
+                    throw new IllegalStateException("Upload was changed concurrently");
+                }
+                return accepted;
+            });
+        } catch (RuntimeException e) {
+            transition(session, UploadSession.Status.COMPLETING, UploadSession.Status.OPEN);
+            throw e;
+        }
+        session.setStatus(UploadSession.Status.COMPLETED);
+        session.setVersionId(version.getId());
+        log.info("Upload {} of {} completed, queued as job {}", sessionId, session.getFileName(), version.getId());
+        return version;
+    }
+
+    public void abort(String sessionId, String userId) {
+        UploadSession session = get(sessionId, userId);
+        if (session.getStatus() != UploadSession.Status.OPEN) {
+            throw new IllegalStateException("Upload is " + session.getStatus());
+        }
+        if (!abort(session, UploadSession.Status.OPEN)) {
+            throw new IllegalStateException("Upload was changed concurrently");
+        }
+    }
+
+    /**
+     * Aborts sessions that have not received anything for the configured
+     * time and removes their partial files. Sessions left completing by a
+     * node that went down are aborted as well.
+     */
+    @Scheduled(fixedDelayString = "${app.rag.upload.cleanup-interval-ms:3600000}")
+    public void abortStale() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(sessionTtlHours);
+        for (UploadSession session : sessionRepository.findByStatusInAndUpdatedAtBefore(
+                List.of(UploadSession.Status.OPEN, UploadSession.Status.COMPLETING), cutoff)) {
+            if (!writing.contains(session.getId()) && abort(session, session.getStatus())) {
+                log.info("Aborted stale upload {} of {}", session.getId(), session.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Aborts the session if it is still in the given status and only then
+     * removes its file, which another request may be reading otherwise.
+     */
+    private boolean abort(UploadSession session, UploadSession.Status from) {
+        if (!transition(session, from, UploadSession.Status.ABORTED)) {
+            return false;
+        }
+        try {
+            Files.deleteIfExists(Path.of(session.getSpoolPath()));
+        } catch (IOException e) {
+            log.warn("Failed to delete partial upload {}", session.getSpoolPath(), e);
+        }
+        return true;
+    }
+
+    private boolean transition(UploadSession session, UploadSession.Status from, UploadSession.Status to) {
+        int updated = transactionTemplate.execute(status ->
+                sessionRepository.transition(session.getId(), from, to, LocalDateTime.now()));
+        if (updated == 0) {
+            return false;
+        }
+        session.setStatus(to);
+        return true;
+    }
+
+    private void recordOffset(UploadSession session, long offset, long position) {
+        if (position == offset) {
+            return;
+        }
+        int updated = transactionTemplate.execute(status -> sessionRepository.advanceOffset(
+                session.getId(), offset, position, LocalDateTime.now(), UploadSession.Status.OPEN));
+        if (updated == 0) {
+            throw new IllegalStateException("Upload was changed concurrently");
+        }
+        session.setReceivedBytes(position);
+    }
+
+    private String sha256Of(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Set<String> parseTags(String tags) {
+        return tags != null ? new HashSet<>(Arrays.asList(tags.split(","))) : new HashSet<>();
+    }
+}
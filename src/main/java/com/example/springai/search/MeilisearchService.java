@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import com.meilisearch.sdk.exceptions.MeilisearchException;
 
@@ -45,6 +46,23 @@ public class MeilisearchService {
         client = new Client(new Config(host, apiKey));
         documentIndex = client.index(DOCUMENTS_INDEX);
         chunkIndex = client.index(CHUNKS_INDEX);
+        ensureChunkIdsFilterable();
+    }
+
+    // Chunks are deleted in batches through an id filter
+    private void ensureChunkIdsFilterable() {
+        try {
+            Set<String> filterable = new HashSet<>();
+            String[] attributes = chunkIndex.getFilterableAttributesSettings();
+            if (attributes != null) {
+                filterable.addAll(List.of(attributes));
+            }
+            if (filterable.add("id")) {
+                chunkIndex.updateFilterableAttributesSettings(filterable.toArray(new String[0]));
+            }
+        } catch (Exception e) {
+            log.warn("Could not make chunk ids filterable, batch chunk deletes will fail", e);
+        }
     }
 
     public void indexDocument(DocumentMetadata document) {
@@ -141,6 +159,17 @@ public class MeilisearchService {
         }
     }
 
+    public void deleteChunks(List<Long> chunkIds) {
+        try {
+            chunkIndex.deleteDocumentsByFilter(chunkIds.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", ", "id IN [", "]")));
+        } catch (Exception e) {
+            log.error("Error deleting {} chunks", chunkIds.size(), e);
+            throw new SearchIndexingException("Failed to delete chunks", e);
+        }
+    }
+
     public static class SearchException extends RuntimeException {
 
         public SearchException(String message, Throwable cause) {
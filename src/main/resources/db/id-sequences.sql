@@ -0,0 +1,21 @@
+-- Pooled id sequences for text_chunks and document_versions. Hibernate
+-- reserves 50 ids per nextval, which lets it batch inserts; the columns used
+-- to be identity columns, so existing tables get sequences positioned past
+-- their current ids
+DO $$
+BEGIN
+    CREATE SEQUENCE IF NOT EXISTS text_chunks_seq START WITH 1 INCREMENT BY 50;
+    CREATE SEQUENCE IF NOT EXISTS document_versions_seq START WITH 1 INCREMENT BY 50;
+
+    IF to_regclass('text_chunks') IS NOT NULL THEN
+        PERFORM setval('text_chunks_seq',
+            GREATEST((SELECT COALESCE(MAX(id), 0) FROM text_chunks) + 50,
+                     (SELECT last_value FROM text_chunks_seq)));
+    END IF;
+
+    IF to_regclass('document_versions') IS NOT NULL THEN
+        PERFORM setval('document_versions_seq',
+            GREATEST((SELECT COALESCE(MAX(id), 0) FROM document_versions) + 50,
+                     (SELECT last_value FROM document_versions_seq)));
+    END IF;
+END $$;
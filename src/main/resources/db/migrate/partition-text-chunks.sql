@@ -0,0 +1,104 @@
+-- One-off migration of an unpartitioned text_chunks table to the
+-- hash-partitioned layout of db/partition-text-chunks.sql. Not part of
+-- spring.sql.init: the application refuses to start until it has run.
+--
+-- Run it with psql outside of a transaction block, with every application
+-- node stopped (at least no node ingesting, purging or versioning, since
+-- rows changed after they were copied are not copied again):
+--
+--   psql -v ON_ERROR_STOP=1 -f partition-text-chunks.sql <database>
+--
+-- Rows are copied into text_chunks_migrating in batches of 50,000 by id,
+-- each batch committed on its own, so the copy holds no long lock and no
+-- huge transaction, and an interrupted run resumes after the last copied
+-- id. The old table then gets a short exclusive lock for the rows added
+-- since the copy and is swapped out; rows without a document are not
+-- reachable by any query and are not copied. The secondary and vector
+-- indexes are built on the partitioned table after the swap.
+
+CREATE TABLE IF NOT EXISTS text_chunks_migrating (
+    id bigint NOT NULL,
+    content text,
+    embedding float8[],
+    document_id varchar(255) NOT NULL,
+    chunk_index integer,
+    content_hash varchar(64),
+    first_version integer,
+    last_version integer,
+    PRIMARY KEY (id, document_id)
+) PARTITION BY HASH (document_id);
+
+DO $$
+DECLARE
+    partition_count CONSTANT int := 16;
+BEGIN
+    IF to_regclass('text_chunks') IS NULL
+            OR (SELECT relkind FROM pg_class WHERE oid = 'text_chunks'::regclass) = 'p' THEN
+        RAISE EXCEPTION 'text_chunks is missing or already partitioned, nothing to migrate';
+    END IF;
+    FOR i IN 0 .. partition_count - 1 LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS text_chunks_p%s PARTITION OF text_chunks_migrating '
+                || 'FOR VALUES WITH (MODULUS %s, REMAINDER %s)', i, partition_count, i);
+    END LOOP;
+END $$;
+
+-- Batched copy, one transaction per batch
+DO $$
+DECLARE
+    batch_size CONSTANT int := 50000;
+    last_id bigint;
+    batch_end bigint;
+    copied bigint := 0;
+    batch_rows bigint;
+BEGIN
+    SELECT COALESCE(MAX(id), 0) INTO last_id FROM text_chunks_migrating;
+    LOOP
+        SELECT MAX(id) INTO batch_end
+            FROM (SELECT id FROM text_chunks WHERE id > last_id ORDER BY id LIMIT batch_size) batch;
+        EXIT WHEN batch_end IS NULL;
+
+        INSERT INTO text_chunks_migrating
+                (id, content, embedding, document_id, chunk_index, content_hash, first_version, last_version)
+            SELECT id, content, embedding, document_id, chunk_index, content_hash,
+                   COALESCE(first_version, 1), last_version
+            FROM text_chunks
+            WHERE id > last_id AND id <= batch_end AND document_id IS NOT NULL;
+        GET DIAGNOSTICS batch_rows = ROW_COUNT;
+        copied := copied + batch_rows;
+        last_id := batch_end;
+        COMMIT;
+        RAISE NOTICE 'Copied % rows, up to id %', copied, last_id;
+    END LOOP;
+END $$;
+
+-- Swap: copies what was added meanwhile under an exclusive lock, then
+-- drops the old table with its vector index and triggers
+BEGIN;
+LOCK TABLE text_chunks IN ACCESS EXCLUSIVE MODE;
+INSERT INTO text_chunks_migrating
+        (id, content, embedding, document_id, chunk_index, content_hash, first_version, last_version)
+    SELECT id, content, embedding, document_id, chunk_index, content_hash,
+           COALESCE(first_version, 1), last_version
+    FROM text_chunks
+    WHERE id > (SELECT COALESCE(MAX(id), 0) FROM text_chunks_migrating) AND document_id IS NOT NULL;
+DO $$
+DECLARE
+    legacy_rows bigint;
+    copied_rows bigint;
+BEGIN
+    SELECT count(*) INTO legacy_rows FROM text_chunks;
+    SELECT count(*) INTO copied_rows FROM text_chunks_migrating;
+    RAISE NOTICE 'Partitioned text_chunks: % of % rows copied', copied_rows, legacy_rows;
+END $$;
+DROP TABLE text_chunks;
+ALTER TABLE text_chunks_migrating RENAME TO text_chunks;
+ALTER INDEX text_chunks_migrating_pkey RENAME TO text_chunks_pkey;
+COMMIT;
+
+CREATE INDEX idx_text_chunks_document_chunk ON text_chunks (document_id, chunk_index);
+CREATE INDEX idx_text_chunks_document_versions ON text_chunks (document_id, last_version);
+-- Same starting size as vector-extension.sql; ChunkIndexMaintenance resizes
+-- each partition's index to its row count
+CREATE INDEX text_chunks_embedding_idx ON text_chunks USING ivfflat (embedding vector_cosine_ops)
+    WITH (lists = 100);
+ANALYZE text_chunks;
@@ -0,0 +1,45 @@
+-- text_chunks is hash-partitioned on document_id into 16 partitions. Each
+-- partition has its own vector index, so index builds, vacuums and purges
+-- work on one slice of the corpus, and queries for a document or a list of
+-- documents only scan the partitions that hold them. The partition key has
+-- to be part of the primary key; ids stay unique through text_chunks_seq.
+--
+-- Runs at startup, before Hibernate's schema update, which then finds the
+-- table in place. On a fresh database the partitioned table is created. An
+-- existing unpartitioned table is not migrated here: startup fails until
+-- db/migrate/partition-text-chunks.sql has been run by hand. Nodes starting
+-- together serialize on an advisory lock.
+DO $$
+DECLARE
+    partition_count CONSTANT int := 16;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('partition-text-chunks'));
+
+    IF to_regclass('text_chunks') IS NOT NULL THEN
+        IF (SELECT relkind FROM pg_class WHERE oid = 'text_chunks'::regclass) <> 'p' THEN
+            RAISE EXCEPTION 'text_chunks is not partitioned; stop the application and run '
+                'db/migrate/partition-text-chunks.sql with psql before starting it again';
+        END IF;
+        RETURN;
+    END IF;
+
+    CREATE TABLE text_chunks (
+        id bigint NOT NULL,
+        content text,
+        embedding float8[],
+        document_id varchar(255) NOT NULL,
+        chunk_index integer,
+        content_hash varchar(64),
+        first_version integer,
+        last_version integer,
+        PRIMARY KEY (id, document_id)
+    ) PARTITION BY HASH (document_id);
+
+    FOR i IN 0 .. partition_count - 1 LOOP
+        EXECUTE format('CREATE TABLE text_chunks_p%s PARTITION OF text_chunks '
+                || 'FOR VALUES WITH (MODULUS %s, REMAINDER %s)', i, partition_count, i);
+    END LOOP;
+
+    CREATE INDEX idx_text_chunks_document_chunk ON text_chunks (document_id, chunk_index);
+    CREATE INDEX idx_text_chunks_document_versions ON text_chunks (document_id, last_version);
+END $$;
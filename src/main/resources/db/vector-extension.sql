@@ -25,7 +25,10 @@ BEGIN
 END;
 $$;
 
--- Create index for vector similarity search if it doesn't exist
+-- Create index for vector similarity search if it doesn't exist. On the
+-- partitioned table this creates one index per partition; lists = 100 is the
+-- starting size, ChunkIndexMaintenance resizes each partition's index to its
+-- row count
 DO $$ 
 BEGIN
     IF NOT EXISTS (
@@ -39,7 +42,9 @@ BEGIN
     END IF;
 END $$;
 
--- Add monitoring function for vector operations
+-- Add monitoring function for vector operations. Runs once per statement
+-- over the transition table, so a batched multi-row insert logs its rows
+-- with a single INSERT ... SELECT instead of one trigger call per row
 CREATE OR REPLACE FUNCTION log_vector_operation()
 RETURNS trigger AS $$
 BEGIN
@@ -48,13 +53,14 @@ BEGIN
         table_name,
         vector_dimension,
         operation_timestamp
-    ) VALUES (
+    )
+    SELECT
         TG_OP,
         TG_TABLE_NAME,
-        array_length(NEW.embedding::float[], 1),
+        array_length(changed.embedding::float[], 1),
         current_timestamp
-    );
-    RETURN NEW;
+    FROM changed_rows changed;
+    RETURN NULL;
 END;
 $$ LANGUAGE plpgsql;
 
@@ -67,10 +73,21 @@ CREATE TABLE IF NOT EXISTS vector_operation_logs (
     operation_timestamp TIMESTAMP
 );
 
--- Create trigger for monitoring vector operations
+-- Create triggers for monitoring vector operations (transition tables need
+-- one trigger per event)
 DROP TRIGGER IF EXISTS vector_operation_trigger ON text_chunks;
-CREATE TRIGGER vector_operation_trigger
-    AFTER INSERT OR UPDATE
+DROP TRIGGER IF EXISTS vector_operation_insert_trigger ON text_chunks;
+CREATE TRIGGER vector_operation_insert_trigger
+    AFTER INSERT
     ON text_chunks
-    FOR EACH ROW
-    EXECUTE FUNCTION log_vector_operation();
\ No newline at end of file
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION log_vector_operation();
+
+DROP TRIGGER IF EXISTS vector_operation_update_trigger ON text_chunks;
+CREATE TRIGGER vector_operation_update_trigger
+    AFTER UPDATE
+    ON text_chunks
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION log_vector_operation();
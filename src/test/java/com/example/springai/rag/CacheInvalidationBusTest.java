@@ -0,0 +1,90 @@
+package com.example.springai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class CacheInvalidationBusTest {
+
+    private static final String NODE = "3f2a9c1e-0000-4000-8000-000000000001";
+
+    @Test
+    void smallInvalidationIsOnePayload() {
+        List<String> payloads = CacheInvalidationBus.toPayloads(NODE, List.of("d:doc-1", "c:col-1"));
+
+        assertThat(payloads).containsExactly(NODE + "\nd:doc-1\nc:col-1");
+    }
+
+    @Test
+    void parseReadsNodeDocumentsAndCollections() {
+        CacheInvalidationBus.Payload payload = CacheInvalidationBus.parse(NODE + "\nd:doc-1\nd:doc-2\nc:col-1");
+
+        assertThat(payload.nodeId()).isEqualTo(NODE);
+        assertThat(payload.documentIds()).containsExactlyInAnyOrder("doc-1", "doc-2");
+        assertThat(payload.collectionIds()).containsExactly("col-1");
+    }
+
+    @Test
+    void parseIgnoresUnknownLines() {
+        CacheInvalidationBus.Payload payload = CacheInvalidationBus.parse(NODE + "\nx:other\nd:doc-1");
+
+        assertThat(payload.documentIds()).containsExactly("doc-1");
+        assertThat(payload.collectionIds()).isEmpty();
+    }
+
+    @Test
+    void parseOfHeaderOnlyHasNoIds() {
+        CacheInvalidationBus.Payload payload = CacheInvalidationBus.parse(NODE);
+
+        assertThat(payload.nodeId()).isEqualTo(NODE);
+        assertThat(payload.documentIds()).isEmpty();
+        assertThat(payload.collectionIds()).isEmpty();
+    }
+
+    @Test
+    void largeInvalidationIsSplitWithinTheNotifyLimit() {
+        List<String> lines = new ArrayList<>();
+        Set<String> documentIds = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            String documentId = "document-" + i;
+            lines.add("d:" + documentId);
+            documentIds.add(documentId);
+        }
+
+        List<String> payloads = CacheInvalidationBus.toPayloads(NODE, lines);
+
+        assertThat(payloads).hasSizeGreaterThan(1);
+        Set<String> parsed = new HashSet<>();
+        for (String payload : payloads) {
+            assertThat(payload.getBytes(StandardCharsets.UTF_8).length)
+                    .isLessThanOrEqualTo(CacheInvalidationBus.MAX_PAYLOAD_BYTES);
+            CacheInvalidationBus.Payload remote = CacheInvalidationBus.parse(payload);
+            assertThat(remote.nodeId()).isEqualTo(NODE);
+            parsed.addAll(remote.documentIds());
+        }
+        assertThat(parsed).isEqualTo(documentIds);
+    }
+
+    @Test
+    void splittingCountsBytesNotCharacters() {
+        // Three bytes per character, so a character count would overfill
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            lines.add("c:コレクション" + i);
+        }
+
+        List<String> payloads = CacheInvalidationBus.toPayloads(NODE, lines);
+
+        assertThat(payloads).hasSizeGreaterThan(1);
+        assertThat(payloads).allSatisfy(payload -> assertThat(payload.getBytes(StandardCharsets.UTF_8).length)
+                .isLessThanOrEqualTo(CacheInvalidationBus.MAX_PAYLOAD_BYTES));
+        assertThat(payloads.stream().mapToInt(payload -> CacheInvalidationBus.parse(payload).collectionIds().size())
+                .sum()).isEqualTo(500);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.springai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.Document;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Peak heap and throughput of the two DOCX paths, run with
+ * {@code mvn test -Dtest=DocxExtractionBenchmarkTest -Dbenchmark=true}.
+ * Both extract the same generated document, 40,000 paragraphs with tables
+ * and 16 MB of images, into the chunker. Peak heap is the sum of the heap
+ * pools' peaks after a collection, less what was in use before, so it
+ * bounds what one extraction needs from above; throughput is the best of
+ * the measured rounds over the file's size.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DocxExtractionBenchmarkTest {
+
+    private static final int PARAGRAPHS = 40_000;
+    private static final int TABLE_EVERY = 500;
+    private static final int IMAGES = 16;
+    private static final int IMAGE_BYTES = 1024 * 1024;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void streamingAgainstXwpf() throws IOException {
+        Path docx = generateDocument(directory.resolve("benchmark.docx"), new Random(42));
+        long fileSize = Files.size(docx);
+        System.out.printf("Document: %.1f MB%n", fileSize / (1024.0 * 1024));
+
+        int xwpfChunks = measure("XWPF", docx, fileSize, false);
+        int staxChunks = measure("StAX", docx, fileSize, true);
+
+        // XWPF ends paragraphs with a single line break, so the counts differ
+        assertThat(xwpfChunks).isPositive();
+        assertThat(staxChunks).isPositive();
+    }
+
+    private static int measure(String name, Path docx, long fileSize, boolean streaming) throws IOException {
+        DocxTextExtractor extractor = new DocxTextExtractor();
+        ReflectionTestUtils.setField(extractor, "streaming", streaming);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            extract(extractor, docx);
+        }
+
+        long best = Long.MAX_VALUE;
+        long peak = 0;
+        int chunks = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long baseline = resetHeapPeaks();
+            long start = System.nanoTime();
+            chunks = extract(extractor, docx);
+            best = Math.min(best, System.nanoTime() - start);
+            peak = Math.max(peak, heapPeaks() - baseline);
+        }
+        System.out.printf("%-5s %7.1f MB/s, peak heap %7.1f MB, %d chunks%n", name,
+                fileSize / (best / 1e9) / (1024 * 1024), peak / (1024.0 * 1024), chunks);
+        return chunks;
+    }
+
+    private static int extract(DocxTextExtractor extractor, Path docx) throws IOException {
+        int[] count = new int[1];
+        TextChunker chunker = new TextChunker(chunk -> count[0]++,
+                new ChunkingOptions(DocumentCollection.ChunkingStrategy.PARAGRAPH, 1000, 100, 256));
+        try (InputStream in = Files.newInputStream(docx)) {
+            extractor.extract(in, chunker);
+        }
+        chunker.finish();
+        return count[0];
+    }
+
+    private static long resetHeapPeaks() {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            pool.resetPeakUsage();
+            used += pool.getUsage().getUsed();
+        }
+        return used;
+    }
+
+    private static long heapPeaks() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+    }
+
+    private static Path generateDocument(Path path, Random random) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(path)) {
+            for (int p = 0; p < PARAGRAPHS; p++) {
+                document.createParagraph().createRun().setText(sentence(random, 20 + random.nextInt(60)));
+                if (p % TABLE_EVERY == TABLE_EVERY - 1) {
+                    XWPFTable table = document.createTable(8, 4);
+                    table.getRows().forEach(row -> row.getTableCells()
+                            .forEach(cell -> cell.setText(sentence(random, 3))));
+                }
+            }
+            byte[] image = new byte[IMAGE_BYTES];
+            for (int i = 0; i < IMAGES; i++) {
+                // Random bytes do not compress, so the package keeps their size
+                random.nextBytes(image);
+                try {
+                    document.createParagraph().createRun().addPicture(new ByteArrayInputStream(image),
+                            Document.PICTURE_TYPE_PNG, "image" + i + ".png", Units.toEMU(100), Units.toEMU(100));
+                } catch (InvalidFormatException e) {
+                    throw new IOException(e);
+                }
+            }
+            document.write(out);
+        }
+        return path;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            int length = 1 + random.nextInt(10);
+            for (int c = 0; c < length; c++) {
+                sentence.append((char) ('a' + random.nextInt(26)));
+            }
+            sentence.append(w == words - 1 ? "." : " ");
+        }
+        return sentence.toString();
+    }
+}
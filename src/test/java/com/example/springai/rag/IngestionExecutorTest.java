@@ -0,0 +1,140 @@
+package com.example.springai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class IngestionExecutorTest {
+
+    private final IngestionPipeline pipeline = mock(IngestionPipeline.class);
+    private final CountDownLatch finish = new CountDownLatch(1);
+    private IngestionExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new IngestionExecutor(pipeline);
+        ReflectionTestUtils.setField(executor, "maxWorkers", 4);
+        ReflectionTestUtils.setField(executor, "minWorkers", 1);
+        ReflectionTestUtils.setField(executor, "latencyTolerance", 1.5);
+        ReflectionTestUtils.setField(executor, "decreaseFactor", 0.75);
+        executor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        finish.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void startsAtTheMinimumAndReservesUpToTheLimit() {
+        assertThat(limit()).isEqualTo(1);
+        assertThat(executor.tryReserve()).isTrue();
+        assertThat(executor.tryReserve()).isFalse();
+
+        executor.release();
+        assertThat(executor.tryReserve()).isTrue();
+    }
+
+    @Test
+    void idleExecutorIsNotAdjusted() {
+        when(pipeline.getRecentMillisPerChunk()).thenReturn(10.0);
+
+        executor.adjust();
+
+        assertThat(limit()).isEqualTo(1);
+        assertThat(executor.getStats().get("baselineMillisPerChunk")).isEqualTo(0.0);
+    }
+
+    @Test
+    void growsByOneWhileAllSlotsAreBusyAndLatencyHolds() throws InterruptedException {
+        when(pipeline.getRecentMillisPerChunk()).thenReturn(10.0);
+
+        for (int expected = 2; expected <= 4; expected++) {
+            startBlockingJob();
+            executor.adjust();
+            assertThat(limit()).isEqualTo(expected);
+        }
+        startBlockingJob();
+        executor.adjust();
+
+        assertThat(limit()).isEqualTo(4);
+        assertThat(executor.getStats().get("limitIncreases")).isEqualTo(3L);
+    }
+
+    @Test
+    void doesNotGrowWithIdleSlots() throws InterruptedException {
+        when(pipeline.getRecentMillisPerChunk()).thenReturn(10.0);
+        startBlockingJob();
+        executor.adjust();
+
+        executor.adjust();
+
+        assertThat(limit()).isEqualTo(2);
+    }
+
+    @Test
+    void cutsMultiplicativelyDownToTheMinimumWhenLatencyClimbs() throws InterruptedException {
+        when(pipeline.getRecentMillisPerChunk()).thenReturn(10.0);
+        for (int i = 0; i < 3; i++) {
+            startBlockingJob();
+            executor.adjust();
+        }
+        assertThat(limit()).isEqualTo(4);
+
+        when(pipeline.getRecentMillisPerChunk()).thenReturn(20.0);
+        executor.adjust();
+        assertThat(limit()).isEqualTo(3);
+        executor.adjust();
+        assertThat(limit()).isEqualTo(2);
+        executor.adjust();
+        assertThat(limit()).isEqualTo(1);
+        executor.adjust();
+
+        assertThat(limit()).isEqualTo(1);
+        assertThat(executor.getStats().get("limitDecreases")).isEqualTo(3L);
+    }
+
+    @Test
+    void baselineFollowsSustainedSlowdown() throws InterruptedException {
+        when(pipeline.getRecentMillisPerChunk()).thenReturn(10.0);
+        startBlockingJob();
+        executor.adjust();
+
+        when(pipeline.getRecentMillisPerChunk()).thenReturn(16.0);
+        for (int i = 0; i < 10; i++) {
+            executor.adjust();
+        }
+
+        // Once the baseline, raised 5% per congested round, passes 16 / 1.5
+        // the latency no longer counts as congestion
+        assertThat((double) executor.getStats().get("baselineMillisPerChunk")).isGreaterThan(16 / 1.5);
+        assertThat(executor.getStats().get("limitDecreases")).isEqualTo(1L);
+    }
+
+    private void startBlockingJob() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        assertThat(executor.tryReserve()).isTrue();
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private int limit() {
+        return (Integer) executor.getStats().get("limit");
+    }
+}
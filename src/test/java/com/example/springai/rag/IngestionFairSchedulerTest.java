@@ -0,0 +1,211 @@
+package com.example.springai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class IngestionFairSchedulerTest {
+
+    // The default quantum, credited per turn at weight 1
+    private static final long QUANTUM = 16 * 1024 * 1024;
+
+    private IngestionFairScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = scheduler("", "");
+    }
+
+    @Test
+    void singleOwnerGetsItsJob() {
+        Optional<IngestionJob> job = scheduler.select(List.of(load("a", 1, 0)), jobs(Map.of("a", QUANTUM)));
+
+        assertThat(job).map(IngestionJob::getOwnerId).contains("a");
+    }
+
+    @Test
+    void nothingClaimableSelectsNothing() {
+        assertThat(scheduler.select(List.of(load("a", 0, 2)), jobs(Map.of("a", QUANTUM)))).isEmpty();
+        assertThat(scheduler.select(List.of(), jobs(Map.of()))).isEmpty();
+    }
+
+    @Test
+    void ownersTakeTurns() {
+        List<IngestionJobRepository.OwnerLoad> loads = List.of(load("a", 10, 0), load("b", 10, 0));
+        BiFunction<String, Integer, Optional<IngestionJob>> jobs = jobs(Map.of("a", QUANTUM, "b", QUANTUM));
+
+        assertThat(owners(loads, jobs, 6)).containsExactly("a", "b", "a", "b", "a", "b");
+    }
+
+    @Test
+    void largeJobsWaitUntilTheOwnerHasEnoughCredit() {
+        // Each turn credits one quantum; a three-quantum job takes three
+        // turns, during which the other owner's small jobs go ahead
+        List<IngestionJobRepository.OwnerLoad> loads = List.of(load("big", 10, 0), load("small", 10, 0));
+        BiFunction<String, Integer, Optional<IngestionJob>> jobs =
+                jobs(Map.of("big", 3 * QUANTUM, "small", QUANTUM));
+
+        assertThat(owners(loads, jobs, 8)).containsExactly("small", "small", "big", "small", "small", "small",
+                "big", "small");
+    }
+
+    @Test
+    void weightsScaleTheCredit() {
+        scheduler = scheduler("heavy=3", "");
+        List<IngestionJobRepository.OwnerLoad> loads = List.of(load("heavy", 100, 0), load("light", 100, 0));
+        BiFunction<String, Integer, Optional<IngestionJob>> jobs =
+                jobs(Map.of("heavy", 3 * QUANTUM, "light", 3 * QUANTUM));
+
+        List<String> owners = owners(loads, jobs, 40);
+
+        assertThat(owners.stream().filter("heavy"::equals).count()).isEqualTo(30);
+        assertThat(owners.stream().filter("light"::equals).count()).isEqualTo(10);
+    }
+
+    @Test
+    void tinyJobsAreChargedTheMinimumCost() {
+        scheduler.select(List.of(load("tiny", 100, 0)), jobs(Map.of("tiny", 1L)));
+
+        assertThat(credit()).containsEntry("tiny", QUANTUM - 256 * 1024);
+    }
+
+    @Test
+    void ownerAtItsLimitSitsOutWhileOthersWait() {
+        scheduler = scheduler("", "busy=1");
+        Map<String, Integer> limits = new HashMap<>();
+        BiFunction<String, Integer, Optional<IngestionJob>> jobs = recordingLimits(limits,
+                jobs(Map.of("busy", QUANTUM, "idle", QUANTUM)));
+
+        Optional<IngestionJob> job = scheduler.select(List.of(load("busy", 5, 1), load("idle", 5, 0)), jobs);
+
+        assertThat(job).map(IngestionJob::getOwnerId).contains("idle");
+        assertThat(limits).containsOnlyKeys("idle").containsEntry("idle", 0);
+    }
+
+    @Test
+    void limitIsPassedOnForTheClaimToRecheck() {
+        scheduler = scheduler("", "busy=2");
+        Map<String, Integer> limits = new HashMap<>();
+        BiFunction<String, Integer, Optional<IngestionJob>> jobs = recordingLimits(limits,
+                jobs(Map.of("busy", QUANTUM, "idle", QUANTUM)));
+
+        scheduler.select(List.of(load("busy", 5, 1), load("idle", 5, 0)), jobs);
+
+        assertThat(limits).containsEntry("busy", 2);
+    }
+
+    @Test
+    void ownerAloneIgnoresItsLimit() {
+        scheduler = scheduler("", "busy=1");
+        Map<String, Integer> limits = new HashMap<>();
+        BiFunction<String, Integer, Optional<IngestionJob>> jobs =
+                recordingLimits(limits, jobs(Map.of("busy", QUANTUM)));
+
+        Optional<IngestionJob> job = scheduler.select(List.of(load("busy", 5, 3), load("done", 0, 1)), jobs);
+
+        assertThat(job).map(IngestionJob::getOwnerId).contains("busy");
+        assertThat(limits).containsEntry("busy", 0);
+    }
+
+    @Test
+    void ownerWhoseJobsAreLockedElsewhereIsSkipped() {
+        BiFunction<String, Integer, Optional<IngestionJob>> jobs = (owner, limit) ->
+                "locked".equals(owner) ? Optional.empty() : Optional.of(job(owner, QUANTUM));
+
+        Optional<IngestionJob> job = scheduler.select(List.of(load("locked", 1, 0), load("free", 1, 0)), jobs);
+
+        assertThat(job).map(IngestionJob::getOwnerId).contains("free");
+    }
+
+    @Test
+    void ownerLeavingTheRotationForfeitsItsCredit() {
+        BiFunction<String, Integer, Optional<IngestionJob>> jobs =
+                jobs(Map.of("big", 3 * QUANTUM, "small", QUANTUM));
+        owners(List.of(load("big", 10, 0), load("small", 10, 0)), jobs, 2);
+        assertThat(credit()).containsEntry("big", 2 * QUANTUM);
+
+        scheduler.select(List.of(load("small", 10, 0)), jobs);
+        assertThat(credit()).doesNotContainKey("big");
+
+        scheduler.select(List.of(load("big", 10, 0), load("small", 10, 0)), jobs);
+        assertThat(credit()).containsEntry("big", 0L);
+    }
+
+    @Test
+    void rejectsMalformedOwnerSettings() {
+        assertThatThrownBy(() -> scheduler("a=1,b", "")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<String> owners(List<IngestionJobRepository.OwnerLoad> loads,
+            BiFunction<String, Integer, Optional<IngestionJob>> jobs, int claims) {
+        List<String> owners = new ArrayList<>();
+        for (int i = 0; i < claims; i++) {
+            owners.add(scheduler.select(loads, jobs).orElseThrow().getOwnerId());
+        }
+        return owners;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> credit() {
+        return (Map<String, Long>) scheduler.getStats().get("creditBytes");
+    }
+
+    private static IngestionFairScheduler scheduler(String weights, String maxInFlight) {
+        IngestionFairScheduler scheduler = new IngestionFairScheduler();
+        ReflectionTestUtils.setField(scheduler, "weightsConfig", weights);
+        ReflectionTestUtils.setField(scheduler, "defaultWeight", 1);
+        ReflectionTestUtils.setField(scheduler, "defaultMaxInFlight", 0);
+        ReflectionTestUtils.setField(scheduler, "maxInFlightConfig", maxInFlight);
+        ReflectionTestUtils.setField(scheduler, "quantumMb", 16L);
+        scheduler.init();
+        return scheduler;
+    }
+
+    private static BiFunction<String, Integer, Optional<IngestionJob>> jobs(Map<String, Long> sizeByOwner) {
+        return (owner, limit) -> Optional.ofNullable(sizeByOwner.get(owner)).map(size -> job(owner, size));
+    }
+
+    private static BiFunction<String, Integer, Optional<IngestionJob>> recordingLimits(Map<String, Integer> limits,
+            BiFunction<String, Integer, Optional<IngestionJob>> jobs) {
+        return (owner, limit) -> {
+            limits.put(owner, limit);
+            return jobs.apply(owner, limit);
+        };
+    }
+
+    private static IngestionJob job(String owner, long size) {
+        IngestionJob job = new IngestionJob();
+        job.setOwnerId(owner);
+        job.setFileSize(size);
+        return job;
+    }
+
+    private static IngestionJobRepository.OwnerLoad load(String owner, long claimable, long running) {
+        return new IngestionJobRepository.OwnerLoad() {
+            @Override
+            public String getOwnerId() {
+                return owner;
+            }
+
+            @Override
+            public long getClaimable() {
+                return claimable;
+            }
+
+            @Override
+            public long getRunning() {
+                return running;
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.springai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Runs several workers against the queue in a real Postgres, where the
+ * claims' {@code FOR UPDATE SKIP LOCKED} and advisory locks take effect.
+ * Skipped when Docker is not available.
+ */
+@DataJpaTest(properties = {
+    "spring.sql.init.mode=never",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({IngestionJobQueue.class, IngestionFairScheduler.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class IngestionJobQueuePostgresTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final AtomicLong VERSION_IDS = new AtomicLong();
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private IngestionJobQueue jobQueue;
+
+    @Autowired
+    private IngestionJobRepository jobRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clearQueue() {
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentWorkersClaimEveryJobExactlyOnce() throws Exception {
+        int jobs = 200;
+        for (int i = 0; i < jobs; i++) {
+            enqueue("owner-" + (i % 3));
+        }
+
+        int workers = 8;
+        ConcurrentLinkedQueue<Long> claimed = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                String workerId = "worker-" + w;
+                running.add(executor.submit(() -> {
+                    start.await();
+                    for (Optional<IngestionJob> job = jobQueue.claim(workerId); job.isPresent();
+                            job = jobQueue.claim(workerId)) {
+                        claimed.add(job.get().getId());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : running) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(claimed).hasSize(jobs).doesNotHaveDuplicates();
+        assertThat(jobRepository.findAll()).allSatisfy(job -> {
+            assertThat(job.getStatus()).isEqualTo(IngestionJob.Status.RUNNING);
+            assertThat(job.getAttempts()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedByAnotherWorker() {
+        IngestionJob job = enqueue("owner");
+        assertThat(jobQueue.claim("crashed")).map(IngestionJob::getId).contains(job.getId());
+        assertThat(jobQueue.claim("other")).isEmpty();
+
+        jdbcTemplate.update("UPDATE ingestion_jobs SET lease_expires_at = LOCALTIMESTAMP - INTERVAL '1 minute' "
+                + "WHERE id = ?", job.getId());
+        Optional<IngestionJob> reclaimed = jobQueue.claim("other");
+
+        assertThat(reclaimed).map(IngestionJob::getId).contains(job.getId());
+        assertThat(reclaimed.get().getAttempts()).isEqualTo(2);
+        assertThat(jobQueue.complete(job.getId(), "crashed")).isFalse();
+        assertThat(jobQueue.complete(job.getId(), "other")).isTrue();
+    }
+
+    @Test
+    void releasedJobIsClaimedAgainWithoutCountingTheAttempt() {
+        IngestionJob job = enqueue("owner");
+        jobQueue.claim("stopping");
+        jobQueue.release(job.getId(), "stopping");
+
+        Optional<IngestionJob> reclaimed = jobQueue.claim("other");
+
+        assertThat(reclaimed).map(IngestionJob::getId).contains(job.getId());
+        assertThat(reclaimed.get().getAttempts()).isEqualTo(1);
+    }
+
+    private IngestionJob enqueue(String owner) {
+        DocumentVersion version = new DocumentVersion();
+        version.setId(VERSION_IDS.incrementAndGet());
+        version.setDocumentId("document-" + version.getId());
+        SpooledDocument source = new SpooledDocument(Path.of("/spool/upload-" + version.getId() + ".bin"),
+                "file.txt", "text/plain", 1024);
+        return jobQueue.enqueue(version, source, owner, null, Set.of());
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.springai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LongLongHashMapTest {
+
+    // A map sized for one entry has 16 slots
+    private static final int SMALL_CAPACITY = 16;
+
+    @Test
+    void putGetAndOverwrite() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        map.put(1, 10);
+        map.put(2, 20);
+        map.put(1, 11);
+
+        assertThat(map.get(1)).isEqualTo(11);
+        assertThat(map.get(2)).isEqualTo(20);
+        assertThat(map.get(3)).isEqualTo(LongLongHashMap.NO_VALUE);
+        assertThat(map.size()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsTheEmptyMarkerAsKey() {
+        LongLongHashMap map = new LongLongHashMap(4);
+
+        assertThatThrownBy(() -> map.put(Long.MIN_VALUE, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void removingMissingKeyIsNoOp() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        map.put(1, 10);
+        map.remove(2);
+
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get(1)).isEqualTo(10);
+    }
+
+    @Test
+    void removeShiftsBackCollidingKeysAcrossTheTableEnd() {
+        // Three keys homed on the last slot occupy it and wrap to slots 0
+        // and 1; removing the first must pull the other two back
+        List<Long> keys = keysWithHome(SMALL_CAPACITY - 1, 3);
+        LongLongHashMap map = new LongLongHashMap(1);
+        for (long key : keys) {
+            map.put(key, key * 2);
+        }
+
+        map.remove(keys.get(0));
+
+        assertThat(map.get(keys.get(0))).isEqualTo(LongLongHashMap.NO_VALUE);
+        assertThat(map.get(keys.get(1))).isEqualTo(keys.get(1) * 2);
+        assertThat(map.get(keys.get(2))).isEqualTo(keys.get(2) * 2);
+        assertThat(map.size()).isEqualTo(2);
+    }
+
+    @Test
+    void removeKeepsKeysHomedAfterTheHoleInPlace() {
+        // Slots 3, 4 and 5 hold keys homed on 3, 4 and 3. Removing the first
+        // must leave the key homed on 4 where it is and move the last one
+        // back over it into slot 3
+        List<Long> homedOnThree = keysWithHome(3, 2);
+        long homedOnFour = keysWithHome(4, 1).get(0);
+        LongLongHashMap map = new LongLongHashMap(1);
+        map.put(homedOnThree.get(0), 1);
+        map.put(homedOnFour, 2);
+        map.put(homedOnThree.get(1), 3);
+
+        map.remove(homedOnThree.get(0));
+
+        assertThat(map.get(homedOnFour)).isEqualTo(2);
+        assertThat(map.get(homedOnThree.get(1))).isEqualTo(3);
+        map.remove(homedOnFour);
+        assertThat(map.get(homedOnThree.get(1))).isEqualTo(3);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        LongLongHashMap map = new LongLongHashMap(1);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key, -key);
+        }
+
+        assertThat(map.size()).isEqualTo(10_000);
+        for (long key = 0; key < 10_000; key++) {
+            assertThat(map.get(key)).isEqualTo(-key);
+        }
+    }
+
+    @Test
+    void clearRemovesEverything() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        map.put(1, 10);
+        map.put(2, 20);
+        map.clear();
+
+        assertThat(map.size()).isZero();
+        assertThat(map.get(1)).isEqualTo(LongLongHashMap.NO_VALUE);
+    }
+
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        // Few distinct keys in a small table keep the probe chains long
+        Random random = new Random(7);
+        LongLongHashMap map = new LongLongHashMap(1);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(12);
+            if (random.nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, (long) i);
+            } else {
+                map.remove(key);
+                expected.remove(key);
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+            for (long probe = 0; probe < 12; probe++) {
+                assertThat(map.get(probe)).isEqualTo(expected.getOrDefault(probe, LongLongHashMap.NO_VALUE));
+            }
+        }
+    }
+
+    // Mirrors the map's slot function for a table of SMALL_CAPACITY slots
+    private static List<Long> keysWithHome(int home, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < count; key++) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            if (((int) (hash ^ (hash >>> 32)) & (SMALL_CAPACITY - 1)) == home) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
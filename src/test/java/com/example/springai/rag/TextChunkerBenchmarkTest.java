@@ -0,0 +1,72 @@
+package com.example.springai.rag;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Throughput of the chunker on generated text, run with
+ * {@code mvn test -Dtest=TextChunkerBenchmarkTest -Dbenchmark=true}.
+ * Each strategy chunks the same 8 MB of mixed Latin and CJK paragraphs
+ * after a warm-up; the best of the measured rounds is reported. A quick
+ * check without extra dependencies; TextChunkerBenchmark in src/jmh/java
+ * measures the same under JMH, with forks and error bounds.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TextChunkerBenchmarkTest {
+
+    private static final int TEXT_CHARS = 8 * 1024 * 1024;
+    // Extraction hands the chunker a page or so at a time
+    private static final int PIECE_CHARS = 4096;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    @Test
+    void chunkingThroughput() {
+        String text = generateText(new Random(42));
+        for (DocumentCollection.ChunkingStrategy strategy : DocumentCollection.ChunkingStrategy.values()) {
+            ChunkingOptions options = new ChunkingOptions(strategy, 1000, 100, 256);
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                chunk(text, options);
+            }
+            long best = Long.MAX_VALUE;
+            int chunks = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                chunks = chunk(text, options);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%-10s %6.1f MB/s, %d chunks%n", strategy,
+                    TEXT_CHARS / (best / 1e9) / (1024 * 1024), chunks);
+        }
+    }
+
+    private static int chunk(String text, ChunkingOptions options) {
+        int[] count = new int[1];
+        TextChunker chunker = new TextChunker(chunk -> count[0]++, options);
+        for (int from = 0; from < text.length(); from += PIECE_CHARS) {
+            chunker.append(text.subSequence(from, Math.min(from + PIECE_CHARS, text.length())));
+        }
+        chunker.finish();
+        return count[0];
+    }
+
+    private static String generateText(Random random) {
+        StringBuilder text = new StringBuilder(TEXT_CHARS);
+        while (text.length() < TEXT_CHARS) {
+            int words = 20 + random.nextInt(200);
+            boolean cjk = random.nextInt(5) == 0;
+            for (int w = 0; w < words; w++) {
+                int length = 1 + random.nextInt(cjk ? 4 : 12);
+                for (int c = 0; c < length; c++) {
+                    text.append(cjk ? (char) ('一' + random.nextInt(2000)) : (char) ('a' + random.nextInt(26)));
+                }
+                text.append(random.nextInt(12) == 0 ? ". " : " ");
+            }
+            text.append("\n\n");
+        }
+        text.setLength(TEXT_CHARS);
+        return text.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.springai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TextChunkerTest {
+
+    private static final DocumentCollection.ChunkingStrategy PARAGRAPH = DocumentCollection.ChunkingStrategy.PARAGRAPH;
+    private static final DocumentCollection.ChunkingStrategy FIXED = DocumentCollection.ChunkingStrategy.FIXED;
+
+    @Test
+    void shortTextIsOneChunk() {
+        assertThat(chunk("Hello world.", PARAGRAPH, 100, 0, 0)).containsExactly("Hello world.");
+    }
+
+    @Test
+    void emptyTextHasNoChunks() {
+        assertThat(chunk("  \n\n  ", PARAGRAPH, 100, 0, 0)).isEmpty();
+    }
+
+    @Test
+    void blankLinesBecomeOneParagraphBreak() {
+        assertThat(chunk("  first\n\n\n\n  second \t third  ", PARAGRAPH, 100, 0, 0))
+                .containsExactly("first\n\nsecond \t third");
+    }
+
+    @Test
+    void paragraphStrategyCutsAtLastParagraphBreak() {
+        String text = "one two three\n\nfour five six seven";
+        assertThat(chunk(text, PARAGRAPH, 25, 0, 0)).containsExactly("one two three", "four five six seven");
+    }
+
+    @Test
+    void fixedStrategyFillsUpToLastWordBreak() {
+        String text = "one two three\n\nfour five six seven";
+        assertThat(chunk(text, FIXED, 25, 0, 0)).containsExactly("one two three\n\nfour five", "six seven");
+    }
+
+    @Test
+    void paragraphStrategyFallsBackToWordBreaks() {
+        assertThat(chunk("alpha beta gamma delta", PARAGRAPH, 12, 0, 0))
+                .containsExactly("alpha beta", "gamma delta");
+    }
+
+    @Test
+    void wordLongerThanChunkIsSplit() {
+        assertThat(chunk("abcdefghij", FIXED, 4, 0, 0)).containsExactly("abcd", "efgh", "ij");
+    }
+
+    @Test
+    void overlapCarriesWholeWordsIntoNextChunk() {
+        List<String> chunks = chunk("one two three four five six", FIXED, 14, 6, 0);
+
+        assertThat(chunks).containsExactly("one two three", "three four", "four five six");
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(14));
+    }
+
+    @Test
+    void tokenLimitCutsBeforeCharacterLimit() {
+        // Twelve-letter words estimate at two tokens each; two are reserved
+        String text = "abcdefghijkl ".repeat(20);
+        List<String> chunks = chunk(text, FIXED, 10_000, 0, 10);
+
+        assertThat(chunks).hasSize(5);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.split(" ")).hasSize(4));
+    }
+
+    @Test
+    void cjkCharactersCountAsOneTokenEach() {
+        String text = "漢字かなカナ한글".repeat(100);
+        List<String> chunks = chunk(text, FIXED, 10_000, 0, 66);
+
+        assertThat(String.join("", chunks)).isEqualTo(text);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(64));
+        assertThat(chunks.get(0)).hasSize(64);
+    }
+
+    @Test
+    void punctuationCountsAsTokens() {
+        List<String> chunks = chunk("a,b,c,d,e,f", FIXED, 100, 0, 7);
+
+        assertThat(String.join("", chunks)).isEqualTo("a,b,c,d,e,f");
+        assertThat(chunks.get(0)).isEqualTo("a,b,c");
+    }
+
+    @Test
+    void chunksDoNotDependOnHowTextIsAppended() {
+        String text = "Lorem ipsum dolor sit amet.\n\nConsectetur adipiscing elit, sed do eiusmod tempor. "
+                .repeat(30);
+        List<String> whole = chunk(text, PARAGRAPH, 200, 40, 50);
+
+        List<TextChunk> pieces = new ArrayList<>();
+        TextChunker chunker = new TextChunker(pieces::add, new ChunkingOptions(PARAGRAPH, 200, 40, 50));
+        for (int i = 0; i < text.length(); i += 7) {
+            chunker.append(text.substring(i, Math.min(i + 7, text.length())));
+        }
+        chunker.finish();
+
+        assertThat(pieces).extracting(TextChunk::getContent).containsExactlyElementsOf(whole);
+    }
+
+    @Test
+    void chunksAreNumberedInOrder() {
+        List<TextChunk> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(chunks::add, new ChunkingOptions(FIXED, 10, 0, 0));
+        chunker.append("one two three four five six seven");
+        chunker.finish();
+
+        assertThat(chunks).extracting(TextChunk::getChunkIndex).containsExactly(0, 1, 2, 3);
+        assertThat(chunker.getChunkCount()).isEqualTo(4);
+    }
+
+    private static List<String> chunk(String text, DocumentCollection.ChunkingStrategy strategy,
+            int chunkSize, int overlap, int maxTokens) {
+        List<String> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(chunk -> chunks.add(chunk.getContent()),
+                new ChunkingOptions(strategy, chunkSize, overlap, maxTokens));
+        chunker.append(text);
+        chunker.finish();
+        return chunks;
+    }
+}
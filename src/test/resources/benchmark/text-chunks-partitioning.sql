@@ -0,0 +1,160 @@
+-- Benchmark of the hash-partitioned text_chunks layout against a single
+-- table with the same rows: document-scoped and global retrieval, purging
+-- deleted documents, and rebuilding the vector index. Runs in its own
+-- schema, never on the application's tables:
+--
+--   psql -v ON_ERROR_STOP=1 -v rows=10000000 -f text-chunks-partitioning.sql <database>
+--
+-- Defaults: 10,000,000 chunks of 100 per document, 16 partitions and
+-- 384-dimension embeddings drawn from 4,096 random base vectors, which
+-- keeps generation fast and gives the index clusters to find. Needs
+-- pgvector and roughly 30 GB of disk at the default size. Every step is
+-- timed (\timing) and the queries are run under EXPLAIN (ANALYZE, BUFFERS),
+-- so the output shows the partitions scanned as well as the times.
+--
+-- The embedding column is vector(384) with vector_l2_ops, the form that
+-- lets ivfflat order by <->; the comparison between the two layouts does
+-- not depend on it.
+
+\if :{?rows}
+\else
+\set rows 10000000
+\endif
+\set chunks_per_document 100
+\set partitions 16
+\set dimensions 384
+\set base_vectors 4096
+\timing on
+
+CREATE EXTENSION IF NOT EXISTS vector;
+DROP SCHEMA IF EXISTS chunk_bench CASCADE;
+CREATE SCHEMA chunk_bench;
+SET search_path = chunk_bench, public;
+SET maintenance_work_mem = '1GB';
+
+-- Data
+
+CREATE TABLE base_vectors AS
+    -- The reference to b makes the subquery run once per row
+    SELECT b AS id,
+           (SELECT array_agg(random())::vector FROM generate_series(1, :dimensions) WHERE b >= 0) AS embedding
+    FROM generate_series(0, :base_vectors - 1) b;
+
+CREATE TABLE chunks_flat (
+    id bigint PRIMARY KEY,
+    content text,
+    embedding vector(:dimensions),
+    document_id varchar(255) NOT NULL,
+    chunk_index integer,
+    last_version integer
+);
+
+INSERT INTO chunks_flat (id, content, embedding, document_id, chunk_index, last_version)
+    SELECT i, repeat('lorem ipsum ', 80), v.embedding,
+           'doc-' || (i / :chunks_per_document), (i % :chunks_per_document)::int, NULL
+    FROM generate_series(0, :rows - 1) i
+    JOIN base_vectors v ON v.id = i % :base_vectors;
+
+CREATE TABLE chunks_partitioned (
+    id bigint NOT NULL,
+    content text,
+    embedding vector(:dimensions),
+    document_id varchar(255) NOT NULL,
+    chunk_index integer,
+    last_version integer,
+    PRIMARY KEY (id, document_id)
+) PARTITION BY HASH (document_id);
+
+SELECT format('CREATE TABLE chunks_partitioned_p%s PARTITION OF chunks_partitioned '
+        || 'FOR VALUES WITH (MODULUS %s, REMAINDER %s)', p, :partitions, p)
+    FROM generate_series(0, :partitions - 1) p
+\gexec
+
+INSERT INTO chunks_partitioned SELECT * FROM chunks_flat;
+
+-- Index builds: the whole table against the partitioned table, which builds
+-- one index per partition. List counts follow ChunkIndexMaintenance: rows /
+-- 1000 up to a million rows, their square root above
+
+SELECT GREATEST(10, CASE WHEN n <= 1000000 THEN n / 1000 ELSE sqrt(n)::bigint END) AS flat_lists,
+       GREATEST(10, CASE WHEN n / :partitions <= 1000000 THEN n / :partitions / 1000
+                         ELSE sqrt(n / :partitions)::bigint END) AS partition_lists
+    FROM (SELECT :rows::bigint AS n) r \gset
+
+CREATE INDEX chunks_flat_document ON chunks_flat (document_id, chunk_index);
+CREATE INDEX chunks_partitioned_document ON chunks_partitioned (document_id, chunk_index);
+CREATE INDEX chunks_flat_embedding ON chunks_flat
+    USING ivfflat (embedding vector_l2_ops) WITH (lists = :flat_lists);
+CREATE INDEX chunks_partitioned_embedding ON chunks_partitioned
+    USING ivfflat (embedding vector_l2_ops) WITH (lists = :partition_lists);
+ANALYZE chunks_flat;
+ANALYZE chunks_partitioned;
+
+SELECT embedding AS query_embedding FROM base_vectors WHERE id = 17 \gset
+SELECT array_agg('doc-' || (d * 997 % (:rows / :chunks_per_document))) AS five_documents
+    FROM generate_series(1, 5) d \gset
+
+-- Retrieval within documents, as for a collection query: the partitioned
+-- table only scans the partitions holding the documents
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, document_id FROM chunks_flat
+    WHERE last_version IS NULL AND document_id = ANY(:'five_documents'::varchar[])
+    ORDER BY embedding <-> :'query_embedding'::vector LIMIT 10;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, document_id FROM chunks_partitioned
+    WHERE last_version IS NULL AND document_id = ANY(:'five_documents'::varchar[])
+    ORDER BY embedding <-> :'query_embedding'::vector LIMIT 10;
+
+-- Retrieval across all documents: the partitioned table merges the nearest
+-- rows of every partition's index
+
+SET ivfflat.probes = 10;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, document_id FROM chunks_flat
+    WHERE last_version IS NULL
+    ORDER BY embedding <-> :'query_embedding'::vector LIMIT 10;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, document_id FROM chunks_partitioned
+    WHERE last_version IS NULL
+    ORDER BY embedding <-> :'query_embedding'::vector LIMIT 10;
+
+-- Purging 200 deleted documents, then vacuuming what they left behind: the
+-- whole table against one partition, as the purger vacuums each partition
+-- on its own
+
+SELECT array_agg('doc-' || (d * 7919 % (:rows / :chunks_per_document))) AS purged_documents
+    FROM generate_series(1, 200) d \gset
+
+EXPLAIN (ANALYZE, BUFFERS)
+DELETE FROM chunks_flat WHERE document_id = ANY(:'purged_documents'::varchar[]);
+
+EXPLAIN (ANALYZE, BUFFERS)
+DELETE FROM chunks_partitioned WHERE document_id = ANY(:'purged_documents'::varchar[]);
+
+VACUUM chunks_flat;
+VACUUM chunks_partitioned_p0;
+
+-- Vector index rebuild, as ChunkIndexMaintenance runs it: the single index
+-- against one partition's
+
+REINDEX INDEX CONCURRENTLY chunks_flat_embedding;
+
+SELECT i.relname AS partition_index
+    FROM pg_inherits h JOIN pg_class i ON i.oid = h.inhrelid
+    WHERE h.inhparent = 'chunk_bench.chunks_partitioned_embedding'::regclass
+    ORDER BY i.relname LIMIT 1 \gset
+REINDEX INDEX CONCURRENTLY :"partition_index";
+
+-- Sizes
+
+SELECT relname, pg_size_pretty(pg_total_relation_size(oid)) AS size
+    FROM pg_class
+    WHERE relnamespace = 'chunk_bench'::regnamespace AND relkind IN ('r', 'p', 'i', 'I')
+    ORDER BY pg_total_relation_size(oid) DESC
+    LIMIT 10;
+
+-- Run DROP SCHEMA chunk_bench CASCADE to remove the data